@@ -0,0 +1,84 @@
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+// solves patterns on a pool of threads and hands back CompletableFutures, for callers that can't block or wait too long
+// every solve gets a new engine and its own SearchLimits, so a pattern that runs past its deadline or step budget stops
+// by itself (within SearchLimits.CHECK_INTERVAL steps) and completes with TIMED_OUT or STEP_LIMIT and the counts so far
+// cancelling a future cancels its engine too, so no thread keeps searching for a result nobody will read
+public class AsyncSolver
+{
+	private final ExecutorService pool;
+	private final Supplier<SolverEngine> engines;
+	
+	// one thread per core, each solve with a DancingLinksSolver
+	public AsyncSolver()
+	{
+		this(Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors()), new Supplier<SolverEngine>()
+		{
+			public SolverEngine get()
+			{
+				return new DancingLinksSolver();
+			}
+		});
+	}
+	
+	// engines must make a new engine each time, as cancelled engines stay cancelled
+	public AsyncSolver(ExecutorService pool, Supplier<SolverEngine> engines)
+	{
+		this.pool = pool;
+		this.engines = engines;
+	}
+	
+	// timeoutMillis = wall-clock time from now, queueing included; maxSteps = search steps; 0 or less for no limit
+	public CompletableFuture<SolveResult> solve(long refRed, long timeoutMillis, long maxSteps)
+	{
+		return solve(refRed, SearchLimits.of(timeoutMillis, maxSteps));
+	}
+	
+	public CompletableFuture<SolveResult> solve(final long refRed, SearchLimits limits)
+	{
+		final SolverEngine engine = engines.get();
+		engine.setLimits(limits);
+		final CompletableFuture<SolveResult> future = new CompletableFuture<SolveResult>()
+		{
+			public boolean cancel(boolean mayInterruptIfRunning)
+			{
+				engine.cancel();			// the search stops at its next check instead of running on
+				return super.cancel(mayInterruptIfRunning);
+			}
+		};
+		try
+		{
+			pool.execute(new Runnable()
+			{
+				public void run()
+				{
+					if (future.isDone())	// cancelled while it waited
+						return;
+					try
+					{
+						future.complete(engine.solve(refRed));
+					}
+					catch (RuntimeException e)
+					{
+						future.completeExceptionally(e);
+					}
+				}
+			});
+		}
+		catch (RejectedExecutionException e)
+		{
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+	
+	// stops taking new solves; the ones already queued still run
+	public void shutdown()
+	{
+		pool.shutdown();
+	}
+}
@@ -0,0 +1,328 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// solves many reference patterns from a file (or stdin) on a pool of worker threads
+// input: one pattern per record, either a line of 64 'r'/'b' characters or 8 lines of 8; '#' starts a comment,
+// whitespace is ignored and blank lines are skipped
+// records are framed by lines, so a line of any other length (or a grid cut short by one) is reported as an ERROR
+// record of its own, and the next line starts a new record; a bad line never shifts the records after it
+// output: one line per pattern as soon as it is solved (so not in input order):
+//		<record #> <status> steps=<n> ms=<t> [<piece>@<row>,<col>/<orientation> ...] [colors=<1-4 per piece>]
+// only a bounded number of patterns are in flight at once, so memory use doesn't grow with the input
+//
+// with -cache, patterns that are symmetric images of earlier ones are answered from a SolutionCache
+// the search counters are published over JMX while it runs (see SolverStats); -stats also prints them at the end
+// with -colors, each solution is also four-colored like a map (see ColorMap)
+// with -db, patterns are looked up in a database built by TilingDatabaseBuilder instead of searched for
+// -timeout and -max-steps give up on a pattern after that many milliseconds or steps (see SearchLimits)
+//
+// usage: java BatchSolver [-threads n] [-engine dfs|cells|dlx] [-db file] [-prune] [-cache entries] [-stats] [-colors]
+//		[-timeout ms] [-max-steps n] [file]
+public class BatchSolver
+{
+	public static final String USAGE = "usage: java BatchSolver [-threads n] [-engine dfs|cells|dlx] [-db file] [-prune] "
+			+ "[-cache entries] [-stats] [-colors] [-timeout ms] [-max-steps n] [file]";
+	
+	private final int numThreads;
+	private final String engine;
+	private boolean regionPruning;				// for the dfs engines, see Solver.setRegionPruning
+	private boolean colorMaps;
+	private String database;					// for the db engine
+	private long timeoutMillis;					// per pattern; 0 = none
+	private long maxSteps;						// per pattern; 0 = none
+	private final PrintWriter out;
+	private final ThreadLocal<SolverEngine> solvers;
+	private final SolutionCache cache;			// null if caching is off
+	private final AtomicLong numSolved = new AtomicLong();
+	private final AtomicLong numUnsolvable = new AtomicLong();
+	private final AtomicLong numStopped = new AtomicLong();	// stopped by a limit before finishing
+	
+	public BatchSolver(int numThreads, String engine, SolutionCache cache, PrintWriter out)
+	{
+		this.numThreads = numThreads;
+		this.engine = engine;
+		this.cache = cache;
+		this.out = out;
+		this.solvers = new ThreadLocal<SolverEngine>()		// one reusable engine per worker
+		{
+			protected SolverEngine initialValue()
+			{
+				return makeEngine();
+			}
+		};
+	}
+	
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		int threads = Runtime.getRuntime().availableProcessors();
+		String engine = "dlx";
+		String file = null;
+		SolutionCache cache = null;
+		boolean prune = false;
+		boolean stats = false;
+		boolean colors = false;
+		String database = null;
+		long timeout = 0;
+		long maxSteps = 0;
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-threads"))
+				threads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-engine"))
+				engine = args[++i];
+			else if (args[i].equals("-db"))
+			{
+				database = args[++i];
+				engine = "db";
+			}
+			else if (args[i].equals("-prune"))
+				prune = true;
+			else if (args[i].equals("-stats"))
+				stats = true;
+			else if (args[i].equals("-colors"))
+				colors = true;
+			else if (args[i].equals("-timeout"))
+				timeout = Long.parseLong(args[++i]);
+			else if (args[i].equals("-max-steps"))
+				maxSteps = Long.parseLong(args[++i]);
+			else if (args[i].equals("-cache"))
+				cache = new SolutionCache(Integer.parseInt(args[++i]));
+			else
+				file = args[i];
+		}
+		if (!(engine.equals("dfs") || engine.equals("cells") || engine.equals("dlx") || (engine.equals("db") && database != null)))
+		{
+			System.err.println("unknown engine: " + engine);
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+		BufferedReader in;
+		if (file == null || file.equals("-"))
+			in = new BufferedReader(new InputStreamReader(System.in));
+		else
+			in = new BufferedReader(new FileReader(file));
+		PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+		
+		if (database != null)
+			System.err.println("database: " + new TilingDatabase(database));		// fails here if it's not a database
+		SolverStats.register();
+		long start = System.nanoTime();
+		BatchSolver batch = new BatchSolver(threads, engine, cache, out);
+		batch.setRegionPruning(prune);
+		batch.setColorMaps(colors);
+		batch.setDatabase(database);
+		batch.setLimits(timeout, maxSteps);
+		long count = batch.run(in);
+		in.close();
+		out.flush();
+		System.err.println(count + " patterns, " + batch.numSolved.get() + " solved, " + batch.numUnsolvable.get()
+				+ " unsolvable, " + batch.numStopped.get() + " stopped, " + String.format("%.1f", (System.nanoTime() - start) / 1e9) + " s");
+		if (cache != null)
+			System.err.println("cache: " + cache);
+		if (stats)
+			System.err.println("search: " + SolverStats.GLOBAL);
+	}
+	
+	public void setRegionPruning(boolean on)
+	{
+		this.regionPruning = on;
+	}
+	
+	public void setColorMaps(boolean on)
+	{
+		this.colorMaps = on;
+	}
+	
+	// file for the db engine
+	public void setDatabase(String file)
+	{
+		this.database = file;
+	}
+	
+	// per pattern; 0 for no limit
+	public void setLimits(long timeoutMillis, long maxSteps)
+	{
+		this.timeoutMillis = timeoutMillis;
+		this.maxSteps = maxSteps;
+	}
+	
+	// reads and solves every record; returns the number of records read
+	public long run(BufferedReader in) throws IOException, InterruptedException
+	{
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		Semaphore inFlight = new Semaphore(numThreads * 4);		// queued + running patterns
+		StringBuilder grid = new StringBuilder(Bitboard.SIZE * Bitboard.SIZE);	// rows so far of an 8-line record
+		long recordNum = 0;
+		String line;
+		try
+		{
+			while ((line = in.readLine()) != null)
+			{
+				String text = strip(line);
+				if (text.isEmpty())
+					continue;
+				String record = null;
+				if (grid.length() > 0 || text.length() == Bitboard.SIZE)
+				{
+					if (text.length() != Bitboard.SIZE)
+					{
+						print(++recordNum + " ERROR expected a row of " + Bitboard.SIZE + " after " + grid.length() / Bitboard.SIZE
+								+ " rows, got " + text.length() + " characters");
+						grid.setLength(0);
+						continue;
+					}
+					grid.append(text);
+					if (grid.length() < Bitboard.SIZE * Bitboard.SIZE)
+						continue;
+					record = grid.toString();
+					grid.setLength(0);
+				}
+				else if (text.length() == Bitboard.SIZE * Bitboard.SIZE)
+					record = text;
+				else
+				{
+					print(++recordNum + " ERROR expected " + Bitboard.SIZE * Bitboard.SIZE + " characters or " + Bitboard.SIZE
+							+ " rows of " + Bitboard.SIZE + ", got " + text.length() + " characters");
+					continue;
+				}
+				
+				final long num = ++recordNum;
+				final String pattern = record;
+				inFlight.acquire();
+				pool.execute(new Runnable()
+				{
+					public void run()
+					{
+						try
+						{
+							solveRecord(num, pattern);
+						}
+						finally
+						{
+							inFlight.release();
+						}
+					}
+				});
+			}
+			if (grid.length() > 0)
+				print(++recordNum + " ERROR incomplete pattern at end of input");
+		}
+		finally
+		{
+			pool.shutdown();
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		}
+		return recordNum;
+	}
+	
+	// the line without its comment and whitespace
+	private static String strip(String line)
+	{
+		int comment = line.indexOf('#');
+		if (comment >= 0)
+			line = line.substring(0, comment);
+		StringBuilder sb = new StringBuilder(line.length());
+		for (int n = 0; n < line.length(); n++)
+			if (!Character.isWhitespace(line.charAt(n)))
+				sb.append(line.charAt(n));
+		return sb.toString();
+	}
+	
+	private void solveRecord(long num, String text)
+	{
+		long refRed;
+		try
+		{
+			refRed = Bitboard.parsePattern(text);
+		}
+		catch (IllegalArgumentException e)
+		{
+			print(num + " ERROR " + e.getMessage());
+			return;
+		}
+		SolveResult r;
+		try
+		{
+			SolverEngine engine = solvers.get();
+			if (timeoutMillis > 0 || maxSteps > 0)
+				engine.setLimits(SearchLimits.of(timeoutMillis, maxSteps));		// from when the pattern's solve starts
+			if (cache != null)
+				r = cache.solve(refRed, engine);
+			else
+				r = engine.solve(refRed);
+		}
+		catch (RuntimeException e)						// a bug or a bad engine; the record still gets its line
+		{
+			print(num + " ERROR " + (e.getMessage() != null ? e.getMessage() : e.toString()));
+			return;
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append(num).append(' ').append(r.getStatus())
+			.append(" steps=").append(r.getSteps())
+			.append(" ms=").append(String.format("%.3f", r.getNanos() / 1e6));
+		if (r.isSolved())
+		{
+			numSolved.incrementAndGet();
+			for (Placement pl : r.getSolution().getPlacements())
+				sb.append(' ').append(PlacementTable.STANDARD.getType(pl.getPiece())).append('@')
+					.append(pl.getRow()).append(',').append(pl.getCol()).append('/').append(pl.getOrientation());
+			if (colorMaps)
+			{
+				ColorMap map = new ColorMap(r.getSolution());
+				if (map.color(4))
+					sb.append(" colors=").append(map);
+			}
+		}
+		else if (!r.isComplete())
+			numStopped.incrementAndGet();
+		else
+			numUnsolvable.incrementAndGet();
+		print(sb.toString());
+	}
+	
+	// flushed at once, so results stream out as patterns finish and a killed run loses none it has printed
+	private void print(String line)
+	{
+		synchronized (out)
+		{
+			out.println(line);
+			out.flush();
+		}
+	}
+	
+	private SolverEngine makeEngine()
+	{
+		if (engine.equals("dfs") || engine.equals("cells"))
+		{
+			Solver s = new Solver();
+			if (engine.equals("cells"))
+				s.setStrategy(Solver.Strategy.CELL_FIRST);
+			s.setRegionPruning(regionPruning);
+			return s;
+		}
+		if (engine.equals("dlx"))
+			return new DancingLinksSolver();
+		if (engine.equals("db"))
+		{
+			try
+			{
+				return new TilingDatabase(database);		// a mapping per worker, as the fallback engine isn't thread-safe
+			}
+			catch (IOException e)
+			{
+				throw new IllegalArgumentException(e.getMessage());
+			}
+		}
+		throw new IllegalArgumentException("unknown engine: " + engine);
+	}
+}
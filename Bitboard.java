@@ -0,0 +1,132 @@
+// helpers for the 64-bit board encoding: cell (i, j) of the 8x8 board is bit i*8 + j
+public class Bitboard
+{
+	public static final int SIZE = 8;
+	public static final long NOT_FIRST_COL = 0xFEFEFEFEFEFEFEFEL;	// every cell except those with j == 0
+	public static final long NOT_LAST_COL = 0x7F7F7F7F7F7F7F7FL;	// every cell except those with j == 7
+	
+	public static int index(int i, int j)
+	{
+		return i*SIZE + j;
+	}
+	
+	public static long bit(int i, int j)
+	{
+		return 1L << index(i, j);
+	}
+	
+	public static boolean isSet(long board, int i, int j)
+	{
+		return (board & bit(i, j)) != 0;
+	}
+	
+	// bitboard of the red squares of a reference grid
+	public static long fromReference(char[][] ref)
+	{
+		long red = 0;
+		for (int i = 0; i < SIZE; i++)
+			for (int j = 0; j < SIZE; j++)
+				if (ref[i][j] == 'r')
+					red |= bit(i, j);
+		return red;
+	}
+	
+	// the 8 symmetries of the square, numbered 0-7: bit 0 = transpose (i, j) -> (j, i), then bit 1 = flip i, bit 2 = flip j
+	public static final int NUM_SYMMETRIES = 8;
+	
+	public static long transform(long board, int symmetry)
+	{
+		if ((symmetry & 1) != 0)
+			board = transpose(board);
+		if ((symmetry & 2) != 0)
+			board = flipRows(board);
+		if ((symmetry & 4) != 0)
+			board = flipCols(board);
+		return board;
+	}
+	
+	// undoes transform(board, symmetry)
+	public static long inverseTransform(long board, int symmetry)
+	{
+		if ((symmetry & 4) != 0)
+			board = flipCols(board);
+		if ((symmetry & 2) != 0)
+			board = flipRows(board);
+		if ((symmetry & 1) != 0)
+			board = transpose(board);
+		return board;
+	}
+	
+	// (i, j) -> (7-i, j): i is the byte index
+	public static long flipRows(long board)
+	{
+		return Long.reverseBytes(board);
+	}
+	
+	// (i, j) -> (i, 7-j): reverses the bits inside each byte
+	public static long flipCols(long board)
+	{
+		board = ((board >>> 1) & 0x5555555555555555L) | ((board & 0x5555555555555555L) << 1);
+		board = ((board >>> 2) & 0x3333333333333333L) | ((board & 0x3333333333333333L) << 2);
+		board = ((board >>> 4) & 0x0F0F0F0F0F0F0F0FL) | ((board & 0x0F0F0F0F0F0F0F0FL) << 4);
+		return board;
+	}
+	
+	// (i, j) -> (j, i) by swapping 4x4, then 2x2, then 1x1 blocks across the diagonal
+	public static long transpose(long board)
+	{
+		long t;
+		t = 0x0F0F0F0F00000000L & (board ^ (board << 28));
+		board ^= t ^ (t >>> 28);
+		t = 0x3333000033330000L & (board ^ (board << 14));
+		board ^= t ^ (t >>> 14);
+		t = 0x5500550055005500L & (board ^ (board << 7));
+		board ^= t ^ (t >>> 7);
+		return board;
+	}
+	
+	// parses a pattern written as 64 'r'/'b' characters, character k being cell (k/8, k%8); whitespace is ignored
+	public static long parsePattern(CharSequence text)
+	{
+		long red = 0;
+		int k = 0;
+		for (int n = 0; n < text.length(); n++)
+		{
+			char c = text.charAt(n);
+			if (Character.isWhitespace(c))
+				continue;
+			if ((c != 'r' && c != 'b') || k >= SIZE*SIZE)
+				throw new IllegalArgumentException("pattern must be " + SIZE*SIZE + " 'r'/'b' characters");
+			if (c == 'r')
+				red |= 1L << k;
+			k++;
+		}
+		if (k != SIZE*SIZE)
+			throw new IllegalArgumentException("pattern must be " + SIZE*SIZE + " 'r'/'b' characters");
+		return red;
+	}
+	
+	// inverse of parsePattern
+	public static String toPattern(long red)
+	{
+		char[] text = new char[SIZE*SIZE];
+		for (int k = 0; k < text.length; k++)
+			text[k] = ((red >>> k) & 1) != 0 ? 'r' : 'b';
+		return new String(text);
+	}
+	
+	// number of empty cells whose four neighbours are all either covered or off the board
+	// shifts every empty cell onto each of its neighbours at once, see neighbours
+	public static int countSingleHoles(long occupied)
+	{
+		long empty = ~occupied;
+		return Long.bitCount(empty & ~neighbours(empty));
+	}
+	
+	// every cell next to (above, below, left or right of) a cell in board; the column masks stop shifts wrapping between rows
+	public static long neighbours(long board)
+	{
+		return (board >>> SIZE) | (board << SIZE)		// cell below, cell above (shifted out at the edges)
+				| ((board >>> 1) & NOT_LAST_COL) | ((board << 1) & NOT_FIRST_COL);	// cell to the right, cell to the left
+	}
+}
@@ -0,0 +1,150 @@
+import java.util.Arrays;
+
+// colors a solution like a map: the pieces are the countries, and pieces that share an edge get different colors
+// the adjacency graph is built once from the solution's ownership grid (bit q of adjacent[p] = pieces p and q touch),
+// and the sets of colors are bitmasks (bit c = color c)
+// pieces are colored in DSatur order: always the piece whose neighbours already use the most different colors,
+// so the hardest pieces go first and the search rarely has to back up
+public class ColorMap
+{
+	public static final int MAX_PIECES = 64;
+	
+	private final long[] adjacent;		// per piece, bitmask of the pieces it shares an edge with
+	private final int[] colors;			// per piece, 0 to numColors-1, or -1 if not colored
+	private final int[] order;			// pieces in the order they were colored
+	private int numColored;
+	private long steps;
+	
+	public ColorMap(Solution sol)
+	{
+		int n = sol.getNumPieces();
+		if (n > MAX_PIECES)
+			throw new IllegalArgumentException("too many pieces for a color map: " + n);
+		this.adjacent = new long[n];
+		this.colors = new int[n];
+		this.order = new int[n];
+		for (int i = 0; i < Bitboard.SIZE; i++)			// every pair of cells side by side with different owners is an edge
+		{
+			for (int j = 0; j < Bitboard.SIZE; j++)
+			{
+				int p = sol.getOwner(i, j);
+				if (i + 1 < Bitboard.SIZE)
+					connect(p, sol.getOwner(i + 1, j));
+				if (j + 1 < Bitboard.SIZE)
+					connect(p, sol.getOwner(i, j + 1));
+			}
+		}
+	}
+	
+	private void connect(int p, int q)
+	{
+		if (p == q || p == Solution.NO_PIECE || q == Solution.NO_PIECE)
+			return;
+		adjacent[p] |= 1L << q;
+		adjacent[q] |= 1L << p;
+	}
+	
+	// colors every piece with at most numColors colors (4 is always enough for a map); returns false if it can't
+	public boolean color(int numColors)
+	{
+		Arrays.fill(colors, -1);
+		this.numColored = 0;
+		this.steps = 0;
+		return colorNext((1 << numColors) - 1);
+	}
+	
+	private boolean colorNext(int allColors)
+	{
+		if (numColored == colors.length)
+			return true;
+		int piece = -1;
+		int pieceUsed = 0;
+		int bestSaturation = -1;
+		int bestDegree = -1;
+		for (int p = 0; p < colors.length; p++)		// uncolored piece with the most colors around it, then the most uncolored neighbours
+		{
+			if (colors[p] >= 0)
+				continue;
+			int used = usedColors(p);
+			int saturation = Integer.bitCount(used);
+			int degree = uncoloredDegree(p);
+			if (saturation > bestSaturation || (saturation == bestSaturation && degree > bestDegree))
+			{
+				piece = p;
+				pieceUsed = used;
+				bestSaturation = saturation;
+				bestDegree = degree;
+			}
+		}
+		order[numColored++] = piece;
+		for (int free = allColors & ~pieceUsed; free != 0; free &= free - 1)	// each color none of its neighbours has
+		{
+			steps++;
+			colors[piece] = Integer.numberOfTrailingZeros(free);
+			if (colorNext(allColors))
+				return true;
+		}
+		colors[piece] = -1;
+		numColored--;
+		return false;
+	}
+	
+	// bitmask of the colors p's neighbours have
+	private int usedColors(int p)
+	{
+		int used = 0;
+		for (long adj = adjacent[p]; adj != 0; adj &= adj - 1)
+		{
+			int c = colors[Long.numberOfTrailingZeros(adj)];
+			if (c >= 0)
+				used |= 1 << c;
+		}
+		return used;
+	}
+	
+	private int uncoloredDegree(int p)
+	{
+		int degree = 0;
+		for (long adj = adjacent[p]; adj != 0; adj &= adj - 1)
+			if (colors[Long.numberOfTrailingZeros(adj)] < 0)
+				degree++;
+		return degree;
+	}
+	
+	public int getNumPieces()
+	{
+		return colors.length;
+	}
+	
+	// color of a piece after color(), or -1
+	public int getColor(int piece)
+	{
+		return colors[piece];
+	}
+	
+	// bitmask of the pieces touching piece
+	public long getAdjacent(int piece)
+	{
+		return adjacent[piece];
+	}
+	
+	// the pieces in the order they were colored, for drawing them one at a time
+	public int[] getOrder()
+	{
+		return Arrays.copyOf(order, numColored);
+	}
+	
+	// colors tried during the last color()
+	public long getSteps()
+	{
+		return steps;
+	}
+	
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int c : colors)
+			sb.append(c < 0 ? '-' : (char)('1' + c));
+		return sb.toString();
+	}
+}
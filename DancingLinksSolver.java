@@ -0,0 +1,250 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// solves the puzzle as an exact cover problem with Knuth's Dancing Links (Algorithm X)
+// columns: one per board cell and one per piece, each to be covered exactly once
+// rows: every placement from the PlacementTable that matches the reference
+// always branches on the column with the fewest remaining rows, so dead ends show up as empty columns right away
+public class DancingLinksSolver implements SolverEngine
+{
+	private static final int ROOT = 0;
+	
+	private final PlacementTable table;
+	private final AtomicBoolean cancelled = new AtomicBoolean();
+	private SearchLimits limits = SearchLimits.NONE;
+	private SolverListener listener;
+	
+	// the sparse matrix as parallel arrays of node links; nodes 1..numColumns are the column headers
+	private int[] left, right, up, down;
+	private int[] column;					// column header of each node
+	private int[] size;						// number of rows left in each column (headers only)
+	private Placement[] rowPlacement;		// placement of the row each node belongs to
+	
+	// per-solve state
+	private Placement[] path;
+	private SearchStats stats;
+	private long steps;
+	private long nextCheck;					// see Solver.checkLimits
+	private long charged;
+	private SolveResult.Status stopped;
+	private boolean solved;
+	
+	public DancingLinksSolver()
+	{
+		this(PlacementTable.STANDARD);
+	}
+	
+	public DancingLinksSolver(PlacementTable table)
+	{
+		this.table = table;
+	}
+	
+	public void setListener(SolverListener l)
+	{
+		this.listener = l;
+	}
+	
+	// stops a running solve; like Solver, a cancelled solver stays cancelled
+	public void cancel()
+	{
+		cancelled.set(true);
+	}
+	
+	// deadline and/or step budget, as for Solver
+	public void setLimits(SearchLimits limits)
+	{
+		this.limits = limits;
+	}
+	
+	public SolveResult solve(long refRed)
+	{
+		long start = System.nanoTime();
+		if (Long.bitCount(refRed) != table.getNumRed())
+		{
+			SolveResult r = new SolveResult(SolveResult.Status.UNEVEN_COLORS, null, 0, System.nanoTime() - start);
+			SolverStats.GLOBAL.record(refRed, r);
+			return r;
+		}
+		Placement[][] matching = table.getMatching(refRed);
+		buildMatrix(matching);
+		this.path = new Placement[table.getNumPieces()];
+		this.stats = new SearchStats(path.length);
+		this.steps = 0;
+		this.charged = 0;
+		this.stopped = null;
+		this.solved = false;
+		if (!checkLimits())
+			search(0);
+		limits.charge(steps - charged);
+		SolveResult.Status status;
+		if (solved)
+			status = SolveResult.Status.SOLVED;
+		else if (stopped != null)
+			status = stopped;
+		else
+			status = SolveResult.Status.NO_SOLUTION;
+		long nanos = System.nanoTime() - start;
+		stats.finish(steps, nanos);
+		stats.filtered(table, matching);
+		SolveResult r = new SolveResult(status, solved ? new Solution(path) : null, steps, nanos, stats);
+		SolverStats.GLOBAL.record(refRed, r);
+		return r;
+	}
+	
+	private void buildMatrix(Placement[][] matching)
+	{
+		int numCells = Bitboard.SIZE * Bitboard.SIZE;
+		int numColumns = numCells + matching.length;	// cell columns first, then piece columns
+		int numNodes = numColumns + 1;
+		for (Placement[] pls : matching)
+			for (Placement pl : pls)
+				numNodes += Long.bitCount(pl.getCells()) + 1;
+		left = new int[numNodes];
+		right = new int[numNodes];
+		up = new int[numNodes];
+		down = new int[numNodes];
+		column = new int[numNodes];
+		size = new int[numColumns + 1];
+		rowPlacement = new Placement[numNodes];
+		
+		for (int c = 0; c <= numColumns; c++)				// circular list of headers, starting at the root
+		{
+			left[c] = (c == 0) ? numColumns : c - 1;
+			right[c] = (c == numColumns) ? 0 : c + 1;
+			up[c] = c;
+			down[c] = c;
+			column[c] = c;
+		}
+		int next = numColumns + 1;
+		for (int n = 0; n < matching.length; n++)
+		{
+			for (Placement pl : matching[n])
+			{
+				int first = next;
+				next = appendNode(next, first, numCells + n + 1, pl);	// piece column
+				long cells = pl.getCells();
+				while (cells != 0)
+				{
+					next = appendNode(next, first, Long.numberOfTrailingZeros(cells) + 1, pl);	// cell columns
+					cells &= cells - 1;
+				}
+			}
+		}
+	}
+	
+	// adds node to the bottom of column col and to the row that starts at first; returns the next free node
+	private int appendNode(int node, int first, int col, Placement pl)
+	{
+		column[node] = col;
+		rowPlacement[node] = pl;
+		up[node] = up[col];
+		down[node] = col;
+		down[up[col]] = node;
+		up[col] = node;
+		size[col]++;
+		if (node == first)
+		{
+			left[node] = node;
+			right[node] = node;
+		}
+		else
+		{
+			left[node] = left[first];
+			right[node] = first;
+			right[left[first]] = node;
+			left[first] = node;
+		}
+		return node + 1;
+	}
+	
+	private void search(int depth)
+	{
+		if (right[ROOT] == ROOT)								// every cell and piece is covered
+		{
+			solved = true;
+			return;
+		}
+		int best = right[ROOT];									// column with the fewest rows left
+		for (int c = right[best]; c != ROOT && size[best] > 1; c = right[c])
+			if (size[c] < size[best])
+				best = c;
+		if (size[best] == 0)									// something can't be covered any more
+		{
+			stats.deadEnd();
+			return;
+		}
+		
+		if (steps >= nextCheck && checkLimits())
+			return;
+		cover(best);
+		for (int r = down[best]; r != best; r = down[r])
+		{
+			steps++;
+			Placement pl = rowPlacement[r];
+			path[pl.getPiece()] = pl;
+			stats.fit(depth);								// every row left in the matrix fits
+			if (listener != null)
+				listener.placed(pl, depth);
+			for (int j = right[r]; j != r; j = right[j])
+				cover(column[j]);
+			search(depth + 1);
+			for (int j = left[r]; j != r; j = left[j])
+				uncover(column[j]);
+			if (solved)
+				break;
+			stats.backtrack();
+			path[pl.getPiece()] = null;
+			if (listener != null)
+				listener.removed(pl, depth);
+			if (stopped != null)
+				break;
+		}
+		uncover(best);
+	}
+	
+	// true if the search has to stop, looking at cancel and the limits only every so many steps (see Solver.checkLimits)
+	private boolean checkLimits()
+	{
+		if (stopped == null)
+		{
+			if (cancelled.get())
+				stopped = SolveResult.Status.CANCELLED;
+			else
+				stopped = limits.charge(steps - charged);
+			charged = steps;
+			nextCheck = steps + limits.nextCheck();
+		}
+		return stopped != null;
+	}
+	
+	// removes column c and every row that uses it
+	private void cover(int c)
+	{
+		right[left[c]] = right[c];
+		left[right[c]] = left[c];
+		for (int i = down[c]; i != c; i = down[i])
+		{
+			for (int j = right[i]; j != i; j = right[j])
+			{
+				down[up[j]] = down[j];
+				up[down[j]] = up[j];
+				size[column[j]]--;
+			}
+		}
+	}
+	
+	// exact reverse of cover
+	private void uncover(int c)
+	{
+		for (int i = up[c]; i != c; i = up[i])
+		{
+			for (int j = left[i]; j != i; j = left[j])
+			{
+				size[column[j]]++;
+				down[up[j]] = j;
+				up[down[j]] = j;
+			}
+		}
+		right[left[c]] = c;
+		left[right[c]] = c;
+	}
+}
@@ -3,10 +3,15 @@ import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Image;
 import java.awt.Point;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 import javax.swing.ImageIcon;
 import javax.swing.JPanel;
+import javax.swing.Timer;
 
 /* v1:
  *		steps = 1,214,176,162
@@ -27,72 +32,154 @@ import javax.swing.JPanel;
  * v12 - v11 with fixed heuristic: now correctly identifies 1x1 squares on the first and last rows and columns
  *     - (previously only identified 1x1 squares NOT in these rows/columns)
  *     - steps = 275,568
+ * v13 - v12 searching a precomputed PlacementTable filtered by the reference colors
+ *     - (placements that can never match the reference are no longer counted as steps)
+ *     - steps = 98,595
+ * v14 - v13 with the cell-first strategy: always fill the first empty cell instead of trying each piece everywhere
+ *     - steps = 2,601 (inverted checkerboard: 1,295, down from 72,495,376 with v13)
+ * v15 - v13/v14 trying only orientations that look different (SQUARE, LINE_3(_INV) 2 each, singles 1 each)
+ *     - steps = 54,594 piece-first, 802 cell-first
+ * v16 - v15 with constraint propagation before and during the search (see Propagator): placements that are the only
+ *       way left to fill a cell or place a piece are added at once, and boards where some cell or piece has none are dropped
+ *     - steps = 112 piece-first, 146 cell-first (inverted checkerboard piece-first: 303,469, down from 59,105,553)
+ * v17 - v16 with the piece-first search choosing its next piece from the board: the one with the fewest placements left
+ *       (instead of the order of Piece.PieceType), so no pattern depends on suiting a fixed order
+ *     - steps = 94 piece-first (inverted checkerboard: 189)
+ *     - only with propagation: without it, the same choice made the search bigger (548,278 steps for the checkerboard,
+ *       334,270,652 inverted), so it keeps v15's order and steps (54,594 and 59,105,553)
+ * v18 - v17 also looking at the empty cell with the fewest placements left over it, and filling that cell instead when
+ *       fewer placements cover it than the piece has, as DancingLinksSolver picks a column
+ *     - steps = 18 piece-first (inverted checkerboard: 18; SolverBenchmark's piece-first-tail: 88, down from 18,681,980)
  */
 
 
-public class Kaleidoscope extends JPanel implements Runnable
+public class Kaleidoscope extends JPanel implements Runnable, SolverListener
 {
 	public static final int START_WIDTH = 100;	// beginning of grid
 	public static final int START_HEIGHT = 50;	// beginning of grid
 	public static final int SQ_SIZE = 35;		// for drawing
+	public static final String[] ENGINES = {"DFS", "DFS (cell-first)", "Parallel DFS", "Dancing Links"};
+	public static final int FPS = 30;			// frames drawn per second at most while solving
+	private static final Font LABEL_FONT = new Font("TimesRoman", Font.PLAIN, 28);
+	private static final Font TEXT_FONT = new Font("TimesRoman", Font.BOLD, 20);
 	
 	private final char[] solutionColors = {'1', '2', '3', '4'};
-	private char[][] board;
 	private char[][] reference;
+	private volatile SolverEngine solver;		// solver for the current run, so reset can cancel it
+	private String engine;						// one of ENGINES
 	
-	private ArrayList<Piece> pieces;			// for red + black solution
-	private ArrayList<Piece> coloredPieces;		// for colored map solution
+	// the search doesn't paint: it keeps its own ownership grid and, when the frame timer asks for one, publishes a copy
+	// of it, which is never changed after; so a step costs a volatile read, and a frame at most a 64-byte copy
+	private final byte[] owners;				// per cell (see Bitboard.index), the piece on it or Solution.NO_PIECE; solving thread only
+	private volatile byte[] frame;				// last published copy of owners, what gets drawn
+	private volatile boolean frameWanted;		// set by the timer, cleared by the solving thread when it publishes
+	private byte[] painted;						// the frame last drawn, so the timer skips repaints when nothing changed
+	private final Timer frameTimer;				// runs only while the panel is displayable, so a hidden one doesn't keep the JVM up
+	private volatile ArrayList<Piece> coloredPieces;	// for colored map solution
 	private boolean solved;
 	private String solutionMessage;
 	public volatile boolean showReference;
 	private int numRed;
 	private Image piecesImage;
+	private BufferedImage staticLayer;			// background, piece image and grids, redrawn only when the size changes
 	
 	private int delayMS;		// for delaying after each newly drawn piece
 	private long steps;
-
+	
 	public Kaleidoscope()
 	{
 		this.delayMS = 0;
+		this.engine = ENGINES[0];
 		reference = new char[8][8];
+		this.owners = new byte[64];
 		this.piecesImage = new ImageIcon(this.getClass().getResource("images/KalPieces.png")).getImage();
 		reset();
+		this.frameTimer = new Timer(1000 / FPS, new ActionListener()
+		{
+			public void actionPerformed(ActionEvent e)
+			{
+				if (!showReference && frame != painted)		// the reference only changes in reset and changeReference,
+					repaint();								// which repaint themselves
+				frameWanted = true;
+			}
+		});
+	}
+	
+	public void addNotify()
+	{
+		super.addNotify();
+		frameTimer.start();
+	}
+	
+	public void removeNotify()
+	{
+		frameTimer.stop();
+		super.removeNotify();
 	}
 	
 	// called by kThread.start(), makes this all work on another thread
 	public void run()
 	{
-		board = new char[8][8];
 		this.showReference = false;
 		this.solved = false;
 		this.steps = 0;
-		repaint();
-		if (!checkStartingHeuristics())
+		Arrays.fill(owners, Solution.NO_PIECE);
+		publish();
+		SolverEngine s = makeEngine();
+		this.solver = s;
+		SolveResult result = s.solve(Bitboard.fromReference(reference));
+		this.steps = result.getSteps();
+		if (result.getStatus() == SolveResult.Status.SOLVED)
+		{
+			this.frame = result.getSolution().getOwners();		// engines without a listener only report the final board
+			solved();
+		}
+		else if (result.getStatus() == SolveResult.Status.UNEVEN_COLORS)
+		{
+			this.solutionMessage = "Uneven number of red and black squares\n";
+			notSolved();
+		}
+		else if (result.getStatus() == SolveResult.Status.NO_SOLUTION)
 			notSolved();
-		else
-			placePiece(0);
 		if (solved && !showReference)
+			makeColorMap(result.getSolution());
+	}
+	
+	// makes the search engine picked in the frame's drop-down
+	private SolverEngine makeEngine()
+	{
+		if (engine.equals("Parallel DFS"))
+			return new ParallelSolver();		// uses every core, so there is nothing to animate
+		if (engine.equals("Dancing Links"))
 		{
-			for (Piece p : pieces)
-				coloredPieces.add(p.getCopy());
-			makeColorMap(0, 0, 4);
+			DancingLinksSolver dlx = new DancingLinksSolver();
+			dlx.setListener(this);
+			return dlx;
 		}
+		Solver s = new Solver();
+		if (engine.equals("DFS (cell-first)"))
+			s.setStrategy(Solver.Strategy.CELL_FIRST);
+		s.setListener(this);
+		return s;
 	}
 	
 	public void reset()
 	{
 		this.solutionMessage = "";
 		showReference = true;
+		SolverEngine s = this.solver;
+		if (s != null)
+			s.cancel();
 		this.solved = false;
 		this.steps = 0;
 		System.out.println("reset");
 		numRed = 32;
 		
-		pieces = new ArrayList<Piece>();			// make new array of pieces
-		for (Piece.PieceType p : Piece.PieceType.values())
-			pieces.add(new Piece(p));
 		this.coloredPieces = new ArrayList<Piece>();
-
+		byte[] empty = new byte[64];				// the solving thread may still be stopping, so leave its grid alone
+		Arrays.fill(empty, Solution.NO_PIECE);
+		this.frame = empty;
+		
 		for (int i = 0; i < reference.length; i++)	// initialize reference as standard chess board
 		{
 			for (int j = 0; j < reference[i].length; j++)
@@ -130,159 +217,69 @@ public class Kaleidoscope extends JPanel implements Runnable
 		repaint();
 	}
 	
-	// depth-first search to place pieces to fit board and match colors of reference grid
-	private void placePiece(int pieceIndex)
-	{
-		if (pieceIndex >= pieces.size())				// if all the pieces have been placed
-		{
-			solved();
-			return;
-		}
-		Piece p = pieces.get(pieceIndex);				// otherwise:
-		for (int i = 0; i < board.length; i++)			// for each place in the board
-		{
-			for (int j = 0; j < board[i].length; j++)
-			{
-				for (int k = 0; k < 4; k++)				// for each of four 90 degree piece rotations
-				{
-					if (showReference)
-						return;
-					steps++;
-					boolean fitsLocation = p.addToBoard(board, i, j, reference);		// add the piece if it fits
-					boolean fitsLocAndHeuristics = fitsLocation && checkHeuristics();	// check heuristics to make sure the add is ok
-					if (fitsLocation)					// if it added (regardless of heuristics)
-					{
-						repaint();						// draw
-						delay();						// wait
-					}
-					if (fitsLocAndHeuristics)			// if it added AND heuristics are ok
-					{
-						placePiece(pieceIndex+1);		// repeat for next piece
-						if (this.solved)						// yaaay
-							return;
-					}
-					if (fitsLocation)					// if it added then remove it
-					{
-						p.removeFromBoard(board, i, j);	// remove the piece
-						repaint();						// draw
-						delay();						// wait
-					}
-					p.rotateCW();						// rotate the piece
-				}
-			}
-		}
-		if (pieceIndex == 0)
-			notSolved();
-	}
-	
-	// heuristics to check at each node of placePiece search
-	private boolean checkHeuristics()
+	// called by the solver each time it adds a piece
+	public void placed(Placement pl, int depth)
 	{
-		// heuristic #1: two or less 1x1 holes exist
-		int numSingleHoles = 0;
-		for (int i = 0; i < board.length; i++)
-			for (int j = 0; j < board[i].length; j++)
-				if (board[i][j] == 0 && (j == board[i].length-1 || board[i][j+1] != 0) && (j == 0 || board[i][j-1] != 0)	// adjacent space either out of bounds or not empty
-						&& (i == board.length-1 || board[i+1][j] != 0) && (i == 0 || board[i-1][j] != 0))
-					numSingleHoles++;
-		return (numSingleHoles <= 2);
+		setOwner(pl.getCells(), (byte)pl.getPiece());
+		if (frameWanted)
+			publish();
+		delay();
 	}
 	
-	// heuristics for identifying impossible configurations from the beginning before placePiece search
-	private boolean checkStartingHeuristics()
+	// called by the solver each time it takes a piece back off
+	public void removed(Placement pl, int depth)
 	{
-		// starting heuristic #1: if unequal # of spots of each color (ie numRed != 32), the config is unsolvable
-		boolean uhoh = (this.numRed != 32);
-		if (uhoh)
-			this.solutionMessage = "Uneven number of red and black squares\n";
-		return !(uhoh);
+		setOwner(pl.getCells(), Solution.NO_PIECE);
+		if (frameWanted)
+			publish();
+		delay();
 	}
 	
-	// depth-first search with backwards propagation to color a map of the solution
-	// point = index of board (row*8+col); colorIndex = which color to try to paint with first; numColors = # of colors to try to paint the map with
-	private boolean makeColorMap(int point, int colorIndex, int numColors)
+	// hands the board as it is now to the next frame; the timer repaints, never the search
+	private void publish()
 	{
-		if (point >= 64 || showReference)
-			return true;
-		Piece currPiece = getPieceAtLoc(point/8, point%8);					// get piece at current location
-		while (point < 64 && getPieceAtLoc(point/8, point%8).isEqualTo(currPiece))	// increase point until it's at a new piece (new value used later)
-			point++;
-
-		ArrayList<Character> constraints = getAdjacentColors(currPiece);	// constraints are all the colors of adjacent pieces
-		for (int i = 0; i < numColors - constraints.size(); i++)			// if constraints has size 3, only try the one remaining color. if size 2, try 2 remaining colors, etc.
-		{																	// if constraint size == 4, skips this loop
-			if (showReference)
-				return true;
-			while (constraints.contains(solutionColors[colorIndex]))		// go through solutionColors and look for a color not contained by constraints
-				colorIndex = (colorIndex + 1) % numColors;
-			currPiece.setColor(solutionColors[colorIndex]);						// color this piece the free color
-			repaint();															// draw
-			delay();															// delay
-			if (makeColorMap(point, (colorIndex+1)%numColors, numColors))		// try to paint piece at next spot on board
-				return true;														// if next piece painted successfully, we're done here boys
-			colorIndex = (colorIndex + 1) % numColors;							// otherwise, this piece needs a different color
-		}
-		return false;
+		frameWanted = false;
+		this.frame = owners.clone();
 	}
 	
-	// returns the piece that contains the point (row, col)
-	private Piece getPieceAtLoc(int row, int col)
+	private void setOwner(long cells, byte piece)
 	{
-		for (Piece p : coloredPieces)
-			for (ColoredPoint cp : p.getPoints())
-				if (p.getRow() + cp.getIntX() == row && p.getCol() + cp.getIntY() == col)
-					return p;
-		return null;
+		for (; cells != 0; cells &= cells - 1)
+			owners[Long.numberOfTrailingZeros(cells)] = piece;
 	}
 	
-	// returns the colors of all adjacent points to Piece p
-	private ArrayList<Character> getAdjacentColors(Piece p)
+	// colors the pieces of a solution like a map, so no two touching pieces have the same color (see ColorMap)
+	// then shows them one at a time, in the order they were colored
+	private boolean makeColorMap(Solution sol)
 	{
-		ArrayList<Character> adjCols = new ArrayList<Character>();
-		for (ColoredPoint cp : p.getPoints())
+		ColorMap map = new ColorMap(sol);
+		boolean colored = map.color(solutionColors.length);
+		ArrayList<Piece> list = new ArrayList<Piece>();
+		for (Placement pl : sol.getPlacements())
 		{
-			int row = p.getRow() + cp.getIntX();
-			int col = p.getCol() + cp.getIntY();
-			while (row >= 0 && p.isEqualTo(getPieceAtLoc(row, col)))		// keep looking at previous rows for a different piece
-				row--;
-			if (row >= 0)
-			{
-				char temp = getPieceAtLoc(row, col).getColor();
-				if (temp != 'r' && temp != 'b' && adjCols.indexOf(temp) == -1)
-					adjCols.add(temp);
-			}
-			row = p.getRow() + cp.getIntX();
-			while (col >= 0 && p.isEqualTo(getPieceAtLoc(row, col)))
-				col--;
-			if (col >= 0)
-			{
-				char temp = getPieceAtLoc(row, col).getColor();
-				if (temp != 'r' && temp != 'b' && adjCols.indexOf(temp) == -1)
-					adjCols.add(temp);
-			}
-			col = p.getCol() + cp.getIntY();
-			while (row < 8 && p.isEqualTo(getPieceAtLoc(row, col)))
-				row++;
-			if (row < 8)
-			{
-				char temp = getPieceAtLoc(row, col).getColor();
-				if (temp != 'r' && temp != 'b' && adjCols.indexOf(temp) == -1)
-					adjCols.add(temp);
-			}
-			row = p.getRow() + cp.getIntX();
-			while (col < 8 && p.isEqualTo(getPieceAtLoc(row, col)))
-				col++;
-			if (col < 8 && getPieceAtLoc(row, col) != null)
+			Piece p = new Piece(PlacementTable.STANDARD.getType(pl.getPiece()));
+			p.setOnBoard(pl);
+			list.add(p);
+		}
+		this.coloredPieces = list;
+		if (!colored)
+			return false;
+		for (int piece : map.getOrder())
+		{
+			if (showReference)				// reset while drawing
+				return true;
+			list.get(piece).setColor(solutionColors[map.getColor(piece)]);
+			if (this.delayMS > 0)
 			{
-				char temp = getPieceAtLoc(row, col).getColor();
-				if (temp != 'r' && temp != 'b' && adjCols.indexOf(temp) == -1)
-					adjCols.add(temp);
+				repaint();
+				delay();
 			}
 		}
-		return adjCols;
+		repaint();
+		return true;
 	}
 	
-	// called when the placePiece method wins
+	// called when the solver wins
 	private void solved()
 	{
 		this.solutionMessage = "Number of steps: " + String.format("%,d", this.steps);
@@ -297,36 +294,96 @@ public class Kaleidoscope extends JPanel implements Runnable
 		System.out.println(this.solutionMessage);
 		repaint();
 	}
-
+	
 	public void setDelay(int del)
 	{
 		this.delayMS = del;
 	}
 	
+	public void setEngine(String eng)
+	{
+		this.engine = eng;
+	}
+	
+	// Reset interrupts the solving thread: stop the search (it can't throw from a listener callback) and keep the
+	// interrupt, so the rest of run() doesn't sleep either
 	private void delay()
 	{
+		if (this.delayMS <= 0)
+			return;
 		try
 		{Thread.sleep(this.delayMS);}
-		catch (InterruptedException e) {}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			SolverEngine s = this.solver;
+			if (s != null)
+				s.cancel();
+		}
 	}
 	
 	@Override
 	public void paintComponent(Graphics g)
 	{
-		drawBackground(g);
-		drawGrids(g);
+		g.drawImage(staticLayer(), 0, 0, null);
 		if (this.showReference)
 			drawReference(g);
 		else
-			for (Piece p : pieces)
-				p.draw(g);
+		{
+			byte[] board = this.frame;		// one snapshot for the whole paint
+			this.painted = board;
+			drawPieces(g, board);
+			if (Piece.drawPieceOutlines)
+				drawOutlines(g, board);
+		}
+		ArrayList<Piece> colored = this.coloredPieces;
 		if (this.solved)
-			for (int i = 0; i < coloredPieces.size(); i++)
-				coloredPieces.get(i).drawColorMap(g, this);
+			for (int i = 0; i < colored.size(); i++)
+				colored.get(i).drawColorMap(g, this);
 		if (!this.solutionMessage.equals(""))
 			drawSteps(g);
 	}
 	
+	// the covered cells in their reference colors, which every placement the engines try matches
+	private void drawPieces(Graphics g, byte[] owners)
+	{
+		for (int i = 0; i < 8; i++)
+		{
+			for (int j = 0; j < 8; j++)
+			{
+				if (owners[Bitboard.index(i, j)] == Solution.NO_PIECE)
+					continue;
+				g.setColor(reference[i][j] == 'r' ? Color.RED : Color.BLACK);
+				g.fillRect(i*SQ_SIZE + START_WIDTH, j*SQ_SIZE + START_HEIGHT, SQ_SIZE, SQ_SIZE);
+			}
+		}
+	}
+	
+	// a line along every cell edge that isn't shared with another cell of the same piece
+	private void drawOutlines(Graphics g, byte[] owners)
+	{
+		g.setColor(Color.LIGHT_GRAY);
+		for (int i = 0; i < 8; i++)
+		{
+			for (int j = 0; j < 8; j++)
+			{
+				int owner = owners[Bitboard.index(i, j)];
+				if (owner == Solution.NO_PIECE)
+					continue;
+				int xPixels = i*SQ_SIZE + START_WIDTH;
+				int yPixels = j*SQ_SIZE + START_HEIGHT;
+				if (j == 0 || owners[Bitboard.index(i, j-1)] != owner)
+					g.fillRect(xPixels, yPixels, SQ_SIZE, 2);
+				if (i == 0 || owners[Bitboard.index(i-1, j)] != owner)
+					g.fillRect(xPixels, yPixels, 2, SQ_SIZE);
+				if (i == 7 || owners[Bitboard.index(i+1, j)] != owner)
+					g.fillRect(xPixels + SQ_SIZE - 2, yPixels, 2, SQ_SIZE);
+				if (j == 7 || owners[Bitboard.index(i, j+1)] != owner)
+					g.fillRect(xPixels, yPixels + SQ_SIZE - 2, SQ_SIZE, 2);
+			}
+		}
+	}
+	
 	private void drawGrids(Graphics g)
 	{
 		g.setColor(Color.BLUE);
@@ -340,16 +397,30 @@ public class Kaleidoscope extends JPanel implements Runnable
 		}
 	}
 	
-	private void drawBackground(Graphics g)
+	// the parts that don't change while solving, drawn once into an image of the panel's size
+	private BufferedImage staticLayer()
+	{
+		int width = Math.max(1, this.getWidth());
+		int height = Math.max(1, this.getHeight());
+		if (staticLayer == null || staticLayer.getWidth() != width || staticLayer.getHeight() != height)
+		{
+			staticLayer = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			Graphics g = staticLayer.getGraphics();
+			drawBackground(g, width, height);
+			drawGrids(g);
+			g.dispose();
+		}
+		return staticLayer;
+	}
+	
+	private void drawBackground(Graphics g, int width, int height)
 	{
-		int width = this.getWidth();
-		int height = this.getHeight();
 		g.setColor(Color.WHITE);
 		g.fillRect(0, 0, width, height);
 		g.drawImage(this.piecesImage, width/2 - this.piecesImage.getWidth(null)/2, 
 				height - this.piecesImage.getHeight(null), null);
 		g.setColor(Color.BLACK);
-		g.setFont(new Font("TimesRoman", Font.PLAIN, 28));
+		g.setFont(LABEL_FONT);
 		String x = "The Pieces: ";
 		g.drawString(x, width/2 - 70, height - this.piecesImage.getHeight(null) - 20);
 	}
@@ -368,7 +439,7 @@ public class Kaleidoscope extends JPanel implements Runnable
 				g.fillRect(i*SQ_SIZE + START_WIDTH, j*SQ_SIZE + START_HEIGHT, SQ_SIZE, SQ_SIZE);
 			}
 		}
-		g.setFont(new Font("TimesRoman", Font.BOLD, 20));
+		g.setFont(TEXT_FONT);
 		g.setColor(Color.BLACK);
 		String sqColors = "Number of red squares: " + numRed + ", Number of black squares: " + (64-numRed);
 		g.drawString(sqColors, START_WIDTH, 8*SQ_SIZE + START_HEIGHT + 22);
@@ -376,7 +447,7 @@ public class Kaleidoscope extends JPanel implements Runnable
 	
 	private void drawSteps(Graphics g)
 	{
-		g.setFont(new Font("TimesRoman", Font.BOLD, 20));
+		g.setFont(TEXT_FONT);
 		g.setColor(Color.BLACK);
 		int slashIndex = this.solutionMessage.indexOf("No solutions found");
 		if (slashIndex <= 0)
@@ -386,6 +457,6 @@ public class Kaleidoscope extends JPanel implements Runnable
 			g.drawString(this.solutionMessage.substring(0, slashIndex), START_WIDTH + 150, 8*SQ_SIZE + START_HEIGHT + 22);
 			g.drawString(this.solutionMessage.substring(slashIndex), START_WIDTH + 150, 8*SQ_SIZE + START_HEIGHT + 44);
 		}
-		g.drawString("One step = one spot check on board for one piece", START_WIDTH + 80, 8*SQ_SIZE + START_HEIGHT + 66);
+		g.drawString("One step = one matching placement tried or forced", START_WIDTH + 80, 8*SQ_SIZE + START_HEIGHT + 66);
 	}
 }
\ No newline at end of file
@@ -23,6 +23,7 @@ public class KaleidoscopeFrame implements MouseListener
 	
 	public static void main(String[] args)
 	{
+		SolverStats.register();		// so the search counters can be watched in jconsole
 		javax.swing.SwingUtilities.invokeLater(new Runnable()
 		{
 			public void run() 
@@ -115,17 +116,28 @@ public class KaleidoscopeFrame implements MouseListener
 		delayLabel.setFont(new Font("TimesRoman", Font.PLAIN, 20));
 		
 		String[] delays = {"0 ms", "50 ms", "500 ms"};
-		JComboBox<String> dropDown = new JComboBox<String>(delays);
+		final JComboBox<String> dropDown = new JComboBox<String>(delays);
 		dropDown.setFocusable(false);
 		dropDown.setMaximumSize(new Dimension(100, 50));
 		dropDown.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent e) {
-				JComboBox<String> cb = (JComboBox<String>)e.getSource();
-				String delay = ((String)cb.getSelectedItem());
+				String delay = ((String)dropDown.getSelectedItem());
 	        	k.setDelay(Integer.parseInt(delay.substring(0, delay.length() - 3)));
 			}
 		});
 		
+		JLabel engineLabel = new JLabel("Search: ");
+		engineLabel.setFont(new Font("TimesRoman", Font.PLAIN, 20));
+		
+		final JComboBox<String> engineDropDown = new JComboBox<String>(Kaleidoscope.ENGINES);
+		engineDropDown.setFocusable(false);
+		engineDropDown.setMaximumSize(new Dimension(130, 50));
+		engineDropDown.addActionListener(new ActionListener() {
+			public void actionPerformed(ActionEvent e) {
+				k.setEngine((String)engineDropDown.getSelectedItem());
+			}
+		});
+		
 		p.add(button2);
 		p.add(Box.createRigidArea(new Dimension(30, 0)));
 		p.add(button3);
@@ -136,6 +148,9 @@ public class KaleidoscopeFrame implements MouseListener
 		p.add(Box.createRigidArea(new Dimension(30, 0)));
 		p.add(delayLabel);
 		p.add(dropDown);
+		p.add(Box.createRigidArea(new Dimension(30, 0)));
+		p.add(engineLabel);
+		p.add(engineDropDown);
 		
 		return p;
 	}
@@ -0,0 +1,79 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// counts durations in buckets that grow with the value, 8 per power of 2, so any percentile is known to within 12.5%
+// recording is a couple of atomic adds and no allocation, so many threads can share one
+public class LatencyHistogram
+{
+	private static final int SUB_BUCKETS = 8;		// per power of 2
+	private static final int SUB_BITS = 3;
+	
+	private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BITS) * SUB_BUCKETS + SUB_BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+	
+	public void record(long nanos)
+	{
+		if (nanos < 0)
+			nanos = 0;
+		counts.incrementAndGet(bucket(nanos));
+		count.incrementAndGet();
+		long m;
+		while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos))
+			;
+	}
+	
+	public long getCount()
+	{
+		return count.get();
+	}
+	
+	public long getMax()
+	{
+		return max.get();
+	}
+	
+	// the smallest bucket bound that at least fraction p (0-1) of the durations are under; 0 if nothing was recorded
+	// a bucket's upper bound, so it errs high, but never past the largest duration seen
+	public long percentile(double p)
+	{
+		long total = count.get();
+		if (total == 0)
+			return 0;
+		long rank = Math.max(1, (long)Math.ceil(p * total));
+		long seen = 0;
+		for (int b = 0; b < counts.length(); b++)
+		{
+			seen += counts.get(b);
+			if (seen >= rank)
+				return Math.min(upperBound(b), max.get());
+		}
+		return max.get();		// counts still being added by other threads
+	}
+	
+	// values under 8 get a bucket each; above, the power of 2 picks 8 buckets and the next 3 bits pick one of them
+	private static int bucket(long v)
+	{
+		if (v < SUB_BUCKETS)
+			return (int)v;
+		int exp = 63 - Long.numberOfLeadingZeros(v);
+		int sub = (int)(v >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return (exp - SUB_BITS + 1) * SUB_BUCKETS + sub;
+	}
+	
+	private static long upperBound(int b)
+	{
+		if (b < SUB_BUCKETS)
+			return b;
+		int exp = b / SUB_BUCKETS + SUB_BITS - 1;
+		long sub = b % SUB_BUCKETS;
+		long next = (SUB_BUCKETS + sub + 1) << (exp - SUB_BITS);
+		return next < 0 ? Long.MAX_VALUE : next - 1;
+	}
+	
+	public String toString()
+	{
+		return String.format("count=%d p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f max=%.3f ms", getCount(),
+				percentile(0.5) / 1e6, percentile(0.9) / 1e6, percentile(0.99) / 1e6, percentile(0.999) / 1e6, getMax() / 1e6);
+	}
+}
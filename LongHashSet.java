@@ -0,0 +1,96 @@
+// a set of longs in one long[] (open addressing, linear probing), so millions of patterns take 16 bytes each
+// instead of a boxed Long and a HashMap entry
+// 0 marks an empty slot, so 0 itself is kept in a separate flag; not thread-safe
+public class LongHashSet
+{
+	private long[] slots;
+	private int size;
+	private boolean hasZero;
+	
+	public LongHashSet()
+	{
+		this(1024);
+	}
+	
+	// expected = number of values to make room for before the first resize
+	public LongHashSet(int expected)
+	{
+		int capacity = 16;
+		while (capacity < expected * 2)
+			capacity <<= 1;
+		this.slots = new long[capacity];
+	}
+	
+	// returns true if value wasn't in the set already
+	public boolean add(long value)
+	{
+		if (value == 0)
+		{
+			if (hasZero)
+				return false;
+			hasZero = true;
+			size++;
+			return true;
+		}
+		int mask = slots.length - 1;
+		int i = hash(value) & mask;
+		while (slots[i] != 0)
+		{
+			if (slots[i] == value)
+				return false;
+			i = (i + 1) & mask;
+		}
+		slots[i] = value;
+		size++;
+		if (size * 2 > slots.length)		// keep it at most half full, so probes stay short
+			grow();
+		return true;
+	}
+	
+	public boolean contains(long value)
+	{
+		if (value == 0)
+			return hasZero;
+		int mask = slots.length - 1;
+		int i = hash(value) & mask;
+		while (slots[i] != 0)
+		{
+			if (slots[i] == value)
+				return true;
+			i = (i + 1) & mask;
+		}
+		return false;
+	}
+	
+	public int size()
+	{
+		return size;
+	}
+	
+	private void grow()
+	{
+		long[] old = slots;
+		slots = new long[old.length * 2];
+		int mask = slots.length - 1;
+		for (long v : old)
+		{
+			if (v == 0)
+				continue;
+			int i = hash(v) & mask;
+			while (slots[i] != 0)
+				i = (i + 1) & mask;
+			slots[i] = v;
+		}
+	}
+	
+	// patterns differ in only a few bits, so mix them all into the low bits used for the index (MurmurHash3's finalizer)
+	private static int hash(long v)
+	{
+		v ^= v >>> 33;
+		v *= 0xff51afd7ed558ccdL;
+		v ^= v >>> 33;
+		v *= 0xc4ceb9fe1a85ec53L;
+		v ^= v >>> 33;
+		return (int)v;
+	}
+}
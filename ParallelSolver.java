@@ -0,0 +1,168 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+// runs the Solver search on a ForkJoinPool by splitting the tree on the placements of the first few pieces, each time
+// the piece with the fewest placements that fit (as Solver picks a piece), so there are few subtrees and little is repeated
+// each subtree gets its own Solver (and board); the first solution found stops all the others
+public class ParallelSolver implements SolverEngine
+{
+	public static final int DEFAULT_SPLIT_DEPTH = 2;
+	
+	private final PlacementTable table;
+	private final ForkJoinPool pool;
+	private final int splitDepth;			// number of leading pieces whose placements become separate tasks
+	private final AtomicBoolean cancelled = new AtomicBoolean();	// set by cancel() only
+	private volatile AtomicBoolean stop;	// per solve: set by cancel, the first solution or a limit, to stop the subtrees
+	private SearchLimits limits = SearchLimits.NONE;	// shared by every subtree's Solver
+	
+	// per-solve state
+	private long refRed;
+	private Placement[][] placements;
+	private AtomicReference<SolveResult> found;
+	private AtomicLong steps;
+	private AtomicReference<SolveResult.Status> stopped;	// first limit a subtree ran into
+	private SearchStats stats;				// every subtree's counts, added up under its lock
+	private long start;
+	
+	public ParallelSolver()
+	{
+		this(PlacementTable.STANDARD, ForkJoinPool.commonPool(), DEFAULT_SPLIT_DEPTH);
+	}
+	
+	public ParallelSolver(PlacementTable table, ForkJoinPool pool, int splitDepth)
+	{
+		this.table = table;
+		this.pool = pool;
+		this.splitDepth = Math.max(1, Math.min(splitDepth, table.getNumPieces()));
+	}
+	
+	// stops a running solve; like Solver, a cancelled ParallelSolver stays cancelled
+	public void cancel()
+	{
+		cancelled.set(true);
+		AtomicBoolean s = stop;
+		if (s != null)
+			s.set(true);
+	}
+	
+	// deadline and/or step budget for all the subtrees together
+	public void setLimits(SearchLimits limits)
+	{
+		this.limits = limits;
+	}
+	
+	public SolveResult solve(long refRed)
+	{
+		this.start = System.nanoTime();
+		if (!new Solver(table).checkStartingHeuristics(refRed))
+		{
+			SolveResult r = new SolveResult(SolveResult.Status.UNEVEN_COLORS, null, 0, System.nanoTime() - start);
+			SolverStats.GLOBAL.record(refRed, r);
+			return r;
+		}
+		this.refRed = refRed;
+		this.placements = table.getMatching(refRed);
+		this.found = new AtomicReference<SolveResult>();
+		this.steps = new AtomicLong();
+		this.stopped = new AtomicReference<SolveResult.Status>();
+		this.stats = new SearchStats(table.getNumPieces());
+		this.stop = new AtomicBoolean();
+		if (cancelled.get())				// cancelled before this solve started, or while stop was being made
+			stop.set(true);
+		pool.invoke(new SplitTask(new Placement[0], 0, 0));
+		
+		SolveResult result = found.get();
+		long nanos = System.nanoTime() - start;
+		stats.finish(steps.get(), nanos);
+		stats.filtered(table, placements);
+		SolveResult r;
+		if (result != null)
+			r = new SolveResult(SolveResult.Status.SOLVED, result.getSolution(), steps.get(), nanos, stats);
+		else if (stopped.get() != null)
+			r = new SolveResult(stopped.get(), null, steps.get(), nanos, stats);
+		else if (stop.get())
+			r = new SolveResult(SolveResult.Status.CANCELLED, null, steps.get(), nanos, stats);
+		else
+			r = new SolveResult(SolveResult.Status.NO_SOLUTION, null, steps.get(), nanos, stats);
+		SolverStats.GLOBAL.record(refRed, r);
+		return r;
+	}
+	
+	// one subtree: forks a task per fitting placement of the most constrained piece until splitDepth, then searches with a Solver
+	private class SplitTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private final Placement[] prefix;
+		private final long occupied;
+		private final long usedPieces;
+		
+		SplitTask(Placement[] prefix, long occupied, long usedPieces)
+		{
+			this.prefix = prefix;
+			this.occupied = occupied;
+			this.usedPieces = usedPieces;
+		}
+		
+		protected void compute()
+		{
+			if (stop.get())
+				return;
+			if (prefix.length == splitDepth)
+			{
+				Solver s = new Solver(table, stop);
+				s.setLimits(limits);
+				SolveResult r = s.solveFrom(refRed, placements, prefix, start);
+				steps.addAndGet(r.getSteps());
+				synchronized (stats)
+				{
+					stats.addCounts(r.getStats());
+				}
+				if (r.isSolved() && found.compareAndSet(null, r))
+					stop.set(true);					// stop every other subtree
+				else if ((r.getStatus() == SolveResult.Status.TIMED_OUT || r.getStatus() == SolveResult.Status.STEP_LIMIT)
+						&& stopped.compareAndSet(null, r.getStatus()))
+					stop.set(true);					// the limits are shared, so every other subtree is out of time or steps too
+				return;
+			}
+			int piece = -1;							// the piece with the fewest placements that fit, ties to the lower index
+			int fewest = Integer.MAX_VALUE;
+			for (int p = 0; p < placements.length; p++)
+			{
+				if ((usedPieces & (1L << p)) != 0)
+					continue;
+				int count = 0;
+				for (Placement pl : placements[p])
+					if ((occupied & pl.getCells()) == 0)
+						count++;
+				if (count < fewest)
+				{
+					piece = p;
+					fewest = count;
+				}
+			}
+			ArrayList<SplitTask> subtasks = new ArrayList<SplitTask>();
+			SearchStats counts = new SearchStats(table.getNumPieces());
+			for (Placement pl : placements[piece])
+			{
+				if ((occupied & pl.getCells()) != 0)
+					continue;
+				counts.fit(prefix.length);
+				Placement[] next = Arrays.copyOf(prefix, prefix.length + 1);
+				next[prefix.length] = pl;
+				subtasks.add(new SplitTask(next, occupied | pl.getCells(), usedPieces | (1L << piece)));
+			}
+			steps.addAndGet(placements[piece].length);
+			synchronized (stats)
+			{
+				stats.addCounts(counts);
+			}
+			invokeAll(subtasks);
+		}
+	}
+}
@@ -0,0 +1,294 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// generates random solvable reference patterns: each one is the colors under a random tiling of the board by the 18 pieces,
+// so it is solvable by construction and the solver plays no part in choosing it
+// a tiling is found by a cell-first search (see Solver.fillCell) over every placement, not just those matching a reference,
+// trying the candidates for each cell in a fresh random order; a search that takes too long is abandoned and started over
+// giving up early keeps the tilings that are quick to find filling cells from the top row down (mostly those that put
+// LINE_8 along the bottom row), so each tiling is then moved by a random one of the 16 symmetries of the board (the 8
+// rotations and mirror images, with and without red and black swapped), which the piece set is closed under; that
+// spreads those tilings evenly over the board's edges and colors, but tilings that are slow to find are still rarer
+// than they would be if every tiling were equally likely
+// every worker thread tiles on its own, and the patterns are deduplicated in a shared set of longs split into stripes
+// so the workers rarely wait for each other
+// output: one pattern per line in BatchSolver's input format; with -solutions the tiling follows as a comment:
+//		<64 'r'/'b'> [# <piece>@<row>,<col>/<orientation> ...]
+// with -symmetric, patterns that are rotations or mirror images of earlier ones are left out as well
+//
+// usage: java PatternGenerator [-count n] [-threads n] [-seed s] [-solutions] [-symmetric] [file]
+public class PatternGenerator
+{
+	// placements tried before a tiling is started over: most tilings are found within a few hundred, but the rest can
+	// take millions, so giving up early and starting again is far cheaper on average
+	public static final int MAX_STEPS = 200;
+	private static final int NUM_STRIPES = 64;		// locks for the set of patterns seen, a power of 2
+	
+	// random tilings, one after another; not thread-safe, so one per thread
+	public static final class Tiler
+	{
+		private final PlacementTable table;
+		private final Placement[][] byFirstCell;	// every placement of every piece, by the lowest cell it covers
+		private final SplittableRandom random;
+		private final Placement[] path;				// placements so far, in the order they were made
+		private final int[][] order;				// per depth, the candidates that fit the cell, shuffled as they are tried
+		private final Placement[] biggest;			// every placement of the piece with the most cells
+		private long occupied;
+		private long usedPieces;
+		private int steps;
+		private long restarts;
+		
+		public Tiler(PlacementTable table, SplittableRandom random)
+		{
+			Placement[][] all = new Placement[table.getNumPieces()][];
+			for (int n = 0; n < all.length; n++)
+				all[n] = table.getPlacements(n);
+			this.table = table;
+			this.byFirstCell = PlacementTable.byFirstCell(all);
+			this.random = random;
+			this.path = new Placement[all.length];
+			int most = 0;
+			for (Placement[] pls : byFirstCell)
+				most = Math.max(most, pls.length);
+			this.order = new int[all.length][most];
+			int big = 0;
+			for (int n = 1; n < all.length; n++)
+				if (Long.bitCount(all[n][0].getCells()) > Long.bitCount(all[big][0].getCells()))
+					big = n;
+			this.biggest = all[big];
+		}
+		
+		// a random tiling of the whole board, one placement per piece in the order they were placed
+		public Placement[] next()
+		{
+			while (true)
+			{
+				occupied = 0;
+				usedPieces = 0;
+				steps = 0;
+				if (fill(0))
+					return transform(path, random.nextInt(2 * Bitboard.NUM_SYMMETRIES));
+				restarts++;
+			}
+		}
+		
+		// the image of a tiling under form (as in SolutionCache: bits 0-2 pick a Bitboard symmetry, bit 3 swaps red and
+		// black), or a copy of the tiling itself if some placement has no image in the table
+		private Placement[] transform(Placement[] tiling, int form)
+		{
+			Placement[] mapped = new Placement[tiling.length];
+			long used = 0;
+			for (int k = 0; k < tiling.length; k++)
+			{
+				long cells = Bitboard.transform(tiling[k].getCells(), form & 7);
+				long red = Bitboard.transform(tiling[k].getRedCells(), form & 7);
+				Placement pl = table.find(cells, (form & 8) != 0 ? cells & ~red : red);
+				if (pl == null || (used & (1L << pl.getPiece())) != 0)
+					return tiling.clone();
+				used |= 1L << pl.getPiece();
+				mapped[k] = pl;
+			}
+			return mapped;
+		}
+		
+		// searches that were abandoned and started over
+		public long getRestarts()
+		{
+			return restarts;
+		}
+		
+		private boolean fill(int depth)
+		{
+			if (depth >= path.length)
+				return true;
+			int cell = Long.numberOfTrailingZeros(~occupied);
+			if (cell >= byFirstCell.length)
+				return false;
+			Placement[] candidates = byFirstCell[cell];
+			int[] fits = order[depth];
+			int numFits = 0;
+			for (int k = 0; k < candidates.length; k++)		// most candidates don't fit, so only shuffle the ones that do
+				if ((usedPieces & (1L << candidates[k].getPiece())) == 0 && (occupied & candidates[k].getCells()) == 0)
+					fits[numFits++] = k;
+			for (int k = 0; k < numFits; k++)
+			{
+				int pick = k + random.nextInt(numFits - k);		// Fisher-Yates, one step per candidate tried
+				Placement pl = candidates[fits[pick]];
+				fits[pick] = fits[k];
+				if (++steps > MAX_STEPS)
+					return false;
+				occupied |= pl.getCells();
+				usedPieces |= 1L << pl.getPiece();
+				path[depth] = pl;
+				if (Solver.checkHeuristics(occupied) && biggestFits() && fill(depth + 1))
+					return true;
+				if (steps > MAX_STEPS)
+					return false;
+				occupied &= ~pl.getCells();
+				usedPieces &= ~(1L << pl.getPiece());
+			}
+			return false;
+		}
+		
+		// the biggest piece (LINE_8 in the standard set) is the first to run out of room, so check it still has some
+		private boolean biggestFits()
+		{
+			if ((usedPieces & (1L << biggest[0].getPiece())) != 0)
+				return true;
+			for (Placement pl : biggest)
+				if ((occupied & pl.getCells()) == 0)
+					return true;
+			return false;
+		}
+	}
+	
+	private final PlacementTable table;
+	private final int numThreads;
+	private final LongHashSet[] seen = new LongHashSet[NUM_STRIPES];
+	private boolean solutions;
+	private boolean symmetric;
+	private final AtomicLong numTilings = new AtomicLong();
+	private final AtomicLong numDuplicates = new AtomicLong();
+	private final AtomicLong numRestarts = new AtomicLong();
+	
+	// expected = rough number of distinct patterns, to size the set up front
+	public PatternGenerator(PlacementTable table, int numThreads, long expected)
+	{
+		this.table = table;
+		this.numThreads = numThreads;
+		int perStripe = (int)Math.min(expected / NUM_STRIPES + 1, 1 << 28);
+		for (int s = 0; s < NUM_STRIPES; s++)
+			seen[s] = new LongHashSet(perStripe);
+	}
+	
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		long count = 1000000;
+		int threads = Runtime.getRuntime().availableProcessors();
+		Long seed = null;
+		boolean solutions = false;
+		boolean symmetric = false;
+		String file = null;
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-count"))
+				count = Long.parseLong(args[++i]);
+			else if (args[i].equals("-threads"))
+				threads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-seed"))
+				seed = Long.parseLong(args[++i]);
+			else if (args[i].equals("-solutions"))
+				solutions = true;
+			else if (args[i].equals("-symmetric"))
+				symmetric = true;
+			else
+				file = args[i];
+		}
+		PrintWriter out;
+		if (file == null || file.equals("-"))
+			out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16));
+		else
+			out = new PrintWriter(new BufferedWriter(new FileWriter(file), 1 << 16));
+		
+		long start = System.nanoTime();
+		PatternGenerator gen = new PatternGenerator(PlacementTable.STANDARD, threads, count);
+		gen.setSolutions(solutions);
+		gen.setSymmetric(symmetric);
+		long made = gen.run(count, seed == null ? new SplittableRandom() : new SplittableRandom(seed), out);
+		out.close();
+		double secs = (System.nanoTime() - start) / 1e9;
+		System.err.println(made + " patterns, " + gen.numTilings.get() + " tilings, " + gen.numDuplicates.get()
+				+ " duplicates, " + gen.numRestarts.get() + " restarts, " + String.format("%.1f", secs) + " s ("
+				+ String.format("%.0f", made / secs) + "/s)");
+	}
+	
+	// with the tiling as a comment after each pattern
+	public void setSolutions(boolean on)
+	{
+		this.solutions = on;
+	}
+	
+	// treat the 8 rotations and mirror images of a pattern as the same pattern
+	public void setSymmetric(boolean on)
+	{
+		this.symmetric = on;
+	}
+	
+	// writes count distinct patterns to out; each worker gets its own generator split from random,
+	// so a seed gives the same tilings per thread (though with more than one thread, not the same output order)
+	public long run(final long count, SplittableRandom random, final PrintWriter out) throws InterruptedException
+	{
+		final AtomicLong made = new AtomicLong();
+		ArrayList<Thread> workers = new ArrayList<Thread>();
+		for (int t = 0; t < numThreads; t++)
+		{
+			final Tiler tiler = new Tiler(table, random.split());
+			Thread worker = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					StringBuilder sb = new StringBuilder();
+					while (made.get() < count)
+					{
+						Placement[] tiling = tiler.next();
+						numTilings.incrementAndGet();
+						long red = 0;
+						for (Placement pl : tiling)
+							red |= pl.getRedCells();
+						if (!add(symmetric ? canonical(red) : red))
+						{
+							numDuplicates.incrementAndGet();
+							continue;
+						}
+						if (made.incrementAndGet() > count)		// another worker got the last one
+							break;
+						sb.setLength(0);
+						sb.append(Bitboard.toPattern(red));
+						if (solutions)
+						{
+							sb.append(" #");
+							for (Placement pl : tiling)
+								sb.append(' ').append(table.getType(pl.getPiece())).append('@')
+									.append(pl.getRow()).append(',').append(pl.getCol()).append('/').append(pl.getOrientation());
+						}
+						synchronized (out)
+						{
+							out.println(sb);
+						}
+					}
+					numRestarts.addAndGet(tiler.getRestarts());
+				}
+			}, "generator-" + t);
+			workers.add(worker);
+			worker.start();
+		}
+		for (Thread worker : workers)
+			worker.join();
+		return Math.min(made.get(), count);
+	}
+	
+	// true if the pattern hasn't been seen before; the stripe comes from the high bits of a multiplicative hash
+	private boolean add(long pattern)
+	{
+		LongHashSet stripe = seen[(int)((pattern * 0x9e3779b97f4a7c15L) >>> 58) & (NUM_STRIPES - 1)];
+		synchronized (stripe)
+		{
+			return stripe.add(pattern);
+		}
+	}
+	
+	// the smallest of the pattern's 8 symmetric images, the same for all of them
+	private static long canonical(long pattern)
+	{
+		long min = pattern;
+		for (int s = 1; s < Bitboard.NUM_SYMMETRIES; s++)
+			min = Math.min(min, Bitboard.transform(pattern, s));
+		return min;
+	}
+}
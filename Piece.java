@@ -14,17 +14,23 @@ public class Piece
 		LINE_2, SINGLE_RED, SINGLE_BLACK;
 	}
 
-	public static boolean drawPieceOutlines = false;
+	public static boolean drawPieceOutlines = false;	// drawn by Kaleidoscope from its ownership grid
 	private PieceType type;
 	private ArrayList<ColoredPoint> points;
+	private ArrayList<ColoredPoint> primaryPoints;	// points in the primary position, orientation 0
 	private boolean isOnBoard;		// whether it should be painted
+	private int orientation;		// 0-3: number of rotateCW calls from the primary position; 4-7: flipped, then rotated 0-3 times
 	private int xPos, yPos;			// index of location of this piece's origin on board
+	private long cellMask, redMask;	// bitboards of the current orientation, shifted so its bounding box starts at bit 0
+	private int minX, minY, maxX, maxY;	// bounding box of the current orientation relative to the origin
 	
 	public Piece(PieceType typ)
 	{
 		type = typ;
 		points = new ArrayList<ColoredPoint>();
 		loadPieceCoords();
+		primaryPoints = getPoints();
+		updateMasks();
 		this.isOnBoard = false;
 	}
 	
@@ -61,9 +67,11 @@ public class Piece
 	{
 		Piece copy = new Piece(type);
 		copy.isOnBoard = this.isOnBoard;
+		copy.orientation = this.orientation;
 		copy.xPos = this.xPos;
 		copy.yPos = this.yPos;
 		copy.points = this.getPoints();
+		copy.updateMasks();
 		return copy;
 	}
 	
@@ -82,38 +90,121 @@ public class Piece
 			ColoredPoint cp = points.get(i);
 			points.set(i, new ColoredPoint(cp.getIntY(), -1*cp.getIntX(), cp.getColor())); // (x, y) --> (y, -x)
 		}
+		orientation = (orientation & 4) | ((orientation + 1) & 3);
+		updateMasks();
 	}
 	
-	// checks to see if there is space on the board for the piece and if the piece's colors match the reference matrix
-	public boolean addToBoard(char[][] board, int i, int j, char[][] ref)
+	// turn the piece over (mirror it), for two-sided piece sets
+	public void flip()
 	{
-		for (ColoredPoint cp : points)
+		for (int i = 0; i < points.size(); i++)
 		{
-			int i2 = i+cp.getIntX();
-			int j2 = j+cp.getIntY();
-			if (i2 < 0 || j2 < 0 || i2 >= board.length || j2 >= board[0].length)	// if the point lies out of bounds
-				return false;
-			char temp = board[i2][j2];
-			if (temp == 'r' || temp == 'b')											// if the point is already occupied
-				return false;
-			if (cp.getColor() != ref[i2][j2])										// if the point is the wrong color
-				return false;
+			ColoredPoint cp = points.get(i);
+			points.set(i, new ColoredPoint(cp.getIntX(), -1*cp.getIntY(), cp.getColor())); // (x, y) --> (x, -y)
 		}
-		
-		for (ColoredPoint cp : points)												// otherwise add the piece
+		orientation = ((orientation & 4) ^ 4) | ((4 - (orientation & 3)) & 3);	// flipping after k turns = flipping, then turning back k times
+		updateMasks();
+	}
+	
+	public int getOrientation()
+	{
+		return orientation;
+	}
+	
+	// puts the piece in one of the 8 orientations, see orientation
+	public void setOrientation(int o)
+	{
+		points = new ArrayList<ColoredPoint>();
+		for (ColoredPoint cp : primaryPoints)
+			points.add(cp.getCopy());
+		orientation = 0;
+		if (o >= 4)
+			flip();
+		while (orientation != o)
+			rotateCW();
+		updateMasks();
+	}
+	
+	// orientations (see orientation) that look different once colors are counted, 4 or 8 of them at most
+	// e.g. a SQUARE turned twice covers the same cells with the same colors, so only orientations 0 and 1 are listed
+	public int[] getDistinctOrientations(boolean flips)
+	{
+		Piece p = new Piece(type);
+		int numOrientations = flips ? 8 : 4;
+		long[] seenCells = new long[numOrientations];
+		long[] seenRed = new long[numOrientations];
+		int numDistinct = 0;
+		int[] distinct = new int[numOrientations];
+		for (int o = 0; o < numOrientations; o++)
 		{
-			board[i+cp.getIntX()][j+cp.getIntY()] = cp.getColor();
-			this.isOnBoard = true;
-			this.xPos = i;
-			this.yPos = j;
+			p.setOrientation(o);
+			boolean seen = false;
+			for (int n = 0; n < numDistinct; n++)
+				if (seenCells[n] == p.cellMask && seenRed[n] == p.redMask)
+					seen = true;
+			if (!seen)
+			{
+				seenCells[numDistinct] = p.cellMask;
+				seenRed[numDistinct] = p.redMask;
+				distinct[numDistinct++] = o;
+			}
 		}
-		return true;
+		int[] result = new int[numDistinct];
+		System.arraycopy(distinct, 0, result, 0, numDistinct);
+		return result;
 	}
 	
-	public void removeFromBoard(char[][] board, int i, int j)
+	// recomputes the bounding box and bitboard masks of the current orientation
+	private void updateMasks()
 	{
+		minX = minY = Integer.MAX_VALUE;
+		maxX = maxY = Integer.MIN_VALUE;
 		for (ColoredPoint cp : points)
-			board[i+cp.getIntX()][j+cp.getIntY()] = 0;
+		{
+			minX = Math.min(minX, cp.getIntX());
+			minY = Math.min(minY, cp.getIntY());
+			maxX = Math.max(maxX, cp.getIntX());
+			maxY = Math.max(maxY, cp.getIntY());
+		}
+		cellMask = 0;
+		redMask = 0;
+		for (ColoredPoint cp : points)
+		{
+			long bit = Bitboard.bit(cp.getIntX() - minX, cp.getIntY() - minY);
+			cellMask |= bit;
+			if (cp.getColor() == 'r')
+				redMask |= bit;
+		}
+	}
+	
+	// bitboard of the cells this piece covers with its origin at (i, j), or 0 if any of them lies out of bounds
+	public long getCellMask(int i, int j)
+	{
+		if (i + minX < 0 || j + minY < 0 || i + maxX >= Bitboard.SIZE || j + maxY >= Bitboard.SIZE)
+			return 0;
+		return cellMask << Bitboard.index(i + minX, j + minY);
+	}
+	
+	// bitboard of the red cells this piece covers with its origin at (i, j), or 0 if any of them lies out of bounds
+	public long getRedMask(int i, int j)
+	{
+		if (i + minX < 0 || j + minY < 0 || i + maxX >= Bitboard.SIZE || j + maxY >= Bitboard.SIZE)
+			return 0;
+		return redMask << Bitboard.index(i + minX, j + minY);
+	}
+	
+	// puts the piece at a placement found by the search, turning it to match
+	public void setOnBoard(Placement pl)
+	{
+		if (this.orientation != pl.getOrientation())
+			setOrientation(pl.getOrientation());
+		this.isOnBoard = true;
+		this.xPos = pl.getRow();
+		this.yPos = pl.getCol();
+	}
+	
+	public void removeFromBoard()
+	{
 		this.isOnBoard = false;
 	}
 	
@@ -134,41 +225,7 @@ public class Piece
 			int xPixels = (xPos + cpX) * Kaleidoscope.SQ_SIZE + Kaleidoscope.START_WIDTH;
 			int yPixels = (yPos + cpY) * Kaleidoscope.SQ_SIZE + Kaleidoscope.START_HEIGHT;
 			g.fillRect(xPixels, yPixels, Kaleidoscope.SQ_SIZE, Kaleidoscope.SQ_SIZE);
-			
-			// draw outlines
-			if (drawPieceOutlines)
-				drawPieceOutlines(cpX, cpY, xPixels, yPixels, g);
-		}
-	}
-	
-	private void drawPieceOutlines(int cpX, int cpY, int xPixels, int yPixels, Graphics g)
-	{
-		g.setColor(Color.LIGHT_GRAY);
-		boolean top = true;
-		boolean left = true;
-		boolean right = true;
-		boolean bottom = true;
-		for (ColoredPoint cp2 : points)
-		{
-			int cp2X = cp2.getIntX();	// check if any point from the same piece borders each point
-			int cp2Y = cp2.getIntY();
-			if (cpY + 1 == cp2Y)		// weird coords b/c of matrix to screen coord conversion
-				bottom = false;
-			if (cpY - 1 == cp2Y)
-				top = false;
-			if (cpX + 1 == cp2X)
-				right = false;
-			if (cpX - 1 == cp2X)
-				left = false;
 		}
-		if (top)
-			g.fillRect(xPixels, yPixels, Kaleidoscope.SQ_SIZE, 2);
-		if (left)
-			g.fillRect(xPixels, yPixels, 2, Kaleidoscope.SQ_SIZE);
-		if (right)
-			g.fillRect(xPixels + Kaleidoscope.SQ_SIZE - 2, yPixels, 2, Kaleidoscope.SQ_SIZE);
-		if (bottom)
-			g.fillRect(xPixels, yPixels + Kaleidoscope.SQ_SIZE - 2, Kaleidoscope.SQ_SIZE, 2);	
 	}
 	
 	public void drawColorMap(Graphics g, Kaleidoscope k)
@@ -0,0 +1,351 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+// a set of colored pieces, each with a number of identical copies, for boards of any size (see WideSolver)
+// definition file, one piece after another:
+//		# comment
+//		flips						(optional, before the first piece: pieces may also be turned over)
+//		piece <name> [copies]
+//		<one line per row of the piece: 'r' = red cell, 'b' = black cell, '.' = no cell>
+// e.g. a red-ended line of three, twice:
+//		piece LINE_3 2
+//		rbr
+public class PieceSet
+{
+	// one orientation of a piece: its cells, shifted so the smallest row and column are 0
+	public static final class Shape
+	{
+		private final int[] rows, cols;
+		private final boolean[] red;
+		private final int height, width;
+		
+		Shape(int[] rows, int[] cols, boolean[] red)
+		{
+			int minRow = Integer.MAX_VALUE, minCol = Integer.MAX_VALUE, maxRow = 0, maxCol = 0;
+			for (int k = 0; k < rows.length; k++)
+			{
+				minRow = Math.min(minRow, rows[k]);
+				minCol = Math.min(minCol, cols[k]);
+			}
+			this.rows = new int[rows.length];
+			this.cols = new int[rows.length];
+			this.red = red.clone();
+			for (int k = 0; k < rows.length; k++)
+			{
+				this.rows[k] = rows[k] - minRow;
+				this.cols[k] = cols[k] - minCol;
+				maxRow = Math.max(maxRow, this.rows[k]);
+				maxCol = Math.max(maxCol, this.cols[k]);
+			}
+			this.height = maxRow + 1;
+			this.width = maxCol + 1;
+		}
+		
+		public int getSize()
+		{
+			return rows.length;
+		}
+		
+		public int getRow(int k)
+		{
+			return rows[k];
+		}
+		
+		public int getCol(int k)
+		{
+			return cols[k];
+		}
+		
+		public boolean isRed(int k)
+		{
+			return red[k];
+		}
+		
+		public int getHeight()
+		{
+			return height;
+		}
+		
+		public int getWidth()
+		{
+			return width;
+		}
+		
+		public int getNumRed()
+		{
+			int n = 0;
+			for (boolean r : red)
+				if (r)
+					n++;
+			return n;
+		}
+		
+		// (row, col) --> (col, -row), the same turn as Piece.rotateCW
+		Shape rotateCW()
+		{
+			int[] negRows = new int[rows.length];
+			for (int k = 0; k < rows.length; k++)
+				negRows[k] = -rows[k];
+			return new Shape(cols, negRows, red);
+		}
+		
+		// (row, col) --> (row, -col), as Piece.flip
+		Shape flip()
+		{
+			int[] negCols = new int[cols.length];
+			for (int k = 0; k < cols.length; k++)
+				negCols[k] = -cols[k];
+			return new Shape(rows, negCols, red);
+		}
+		
+		// the piece drawn as it appears in a definition file
+		public String toString()
+		{
+			char[][] grid = new char[height][width];
+			for (char[] line : grid)
+				Arrays.fill(line, '.');
+			for (int k = 0; k < rows.length; k++)
+				grid[rows[k]][cols[k]] = red[k] ? 'r' : 'b';
+			StringBuilder sb = new StringBuilder();
+			for (char[] line : grid)
+				sb.append(line).append('\n');
+			return sb.toString();
+		}
+		
+		// same cells and colors, whatever order they're listed in
+		boolean looksLike(Shape other)
+		{
+			if (other.rows.length != rows.length || other.height != height || other.width != width)
+				return false;
+			return Arrays.equals(grid(), other.grid());
+		}
+		
+		private int[] grid()
+		{
+			int[] g = new int[height * width];
+			for (int k = 0; k < rows.length; k++)
+				g[rows[k] * width + cols[k]] = red[k] ? 2 : 1;
+			return g;
+		}
+	}
+	
+	private final ArrayList<String> names = new ArrayList<String>();
+	private final ArrayList<Shape> shapes = new ArrayList<Shape>();		// primary position of each piece
+	private final ArrayList<Integer> copies = new ArrayList<Integer>();
+	private boolean flips;
+	
+	// the 18 pieces of the real puzzle, one copy each, taken from Piece
+	public static PieceSet standard()
+	{
+		PieceSet set = new PieceSet();
+		for (Piece.PieceType type : Piece.PieceType.values())
+		{
+			ArrayList<ColoredPoint> points = new Piece(type).getPoints();
+			int[] rows = new int[points.size()];
+			int[] cols = new int[points.size()];
+			boolean[] red = new boolean[points.size()];
+			for (int k = 0; k < rows.length; k++)
+			{
+				rows[k] = points.get(k).getIntX();
+				cols[k] = points.get(k).getIntY();
+				red[k] = points.get(k).getColor() == 'r';
+			}
+			set.add(type.toString(), new Shape(rows, cols, red), 1);
+		}
+		return set;
+	}
+	
+	public static PieceSet load(String file) throws IOException
+	{
+		return load(new FileReader(file));
+	}
+	
+	// e.g. load(PieceSet.class.getResourceAsStream("pieces/10x10.txt"))
+	public static PieceSet load(InputStream in) throws IOException
+	{
+		if (in == null)
+			throw new IOException("piece set not found");
+		return load(new InputStreamReader(in, "UTF-8"));
+	}
+	
+	// throws IllegalArgumentException, with the line number, if the definition is malformed
+	public static PieceSet load(Reader reader) throws IOException
+	{
+		PieceSet set = new PieceSet();
+		BufferedReader in = new BufferedReader(reader);
+		String name = null;
+		int count = 0;
+		ArrayList<String> lines = new ArrayList<String>();
+		int lineNum = 0;
+		String line;
+		try
+		{
+			while ((line = in.readLine()) != null)
+			{
+				lineNum++;
+				int comment = line.indexOf('#');
+				if (comment >= 0)
+					line = line.substring(0, comment);
+				line = line.trim();
+				if (line.length() == 0)
+					continue;
+				String[] words = line.split("\\s+");
+				if (words[0].equals("flips"))
+				{
+					if (name != null || set.getNumPieces() > 0)
+						throw new IllegalArgumentException("line " + lineNum + ": flips must come before the first piece");
+					set.flips = true;
+				}
+				else if (words[0].equals("piece"))
+				{
+					if (name != null)
+						set.add(name, parseShape(name, lines), count);
+					if (words.length < 2 || words.length > 3)
+						throw new IllegalArgumentException("line " + lineNum + ": expected piece <name> [copies]");
+					name = words[1];
+					count = words.length == 3 ? Integer.parseInt(words[2]) : 1;
+					if (count < 1)
+						throw new IllegalArgumentException("line " + lineNum + ": copies must be at least 1");
+					lines.clear();
+				}
+				else if (name == null)
+					throw new IllegalArgumentException("line " + lineNum + ": expected piece <name> [copies]");
+				else
+				{
+					for (int n = 0; n < line.length(); n++)
+						if ("rb.".indexOf(line.charAt(n)) < 0)
+							throw new IllegalArgumentException("line " + lineNum + ": cells must be 'r', 'b' or '.'");
+					lines.add(line);
+				}
+			}
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException("line " + lineNum + ": bad number of copies");
+		}
+		finally
+		{
+			in.close();
+		}
+		if (name != null)
+			set.add(name, parseShape(name, lines), count);
+		if (set.getNumPieces() == 0)
+			throw new IllegalArgumentException("no pieces");
+		return set;
+	}
+	
+	private static Shape parseShape(String name, ArrayList<String> lines)
+	{
+		ArrayList<int[]> cells = new ArrayList<int[]>();
+		for (int i = 0; i < lines.size(); i++)
+			for (int j = 0; j < lines.get(i).length(); j++)
+				if (lines.get(i).charAt(j) != '.')
+					cells.add(new int[] {i, j, lines.get(i).charAt(j) == 'r' ? 1 : 0});
+		if (cells.isEmpty())
+			throw new IllegalArgumentException("piece " + name + " has no cells");
+		int[] rows = new int[cells.size()];
+		int[] cols = new int[cells.size()];
+		boolean[] red = new boolean[cells.size()];
+		for (int k = 0; k < rows.length; k++)
+		{
+			rows[k] = cells.get(k)[0];
+			cols[k] = cells.get(k)[1];
+			red[k] = cells.get(k)[2] == 1;
+		}
+		return new Shape(rows, cols, red);
+	}
+	
+	private void add(String name, Shape shape, int count)
+	{
+		names.add(name);
+		shapes.add(shape);
+		copies.add(count);
+	}
+	
+	public boolean isTwoSided()
+	{
+		return flips;
+	}
+	
+	// number of different pieces (not counting copies)
+	public int getNumPieces()
+	{
+		return shapes.size();
+	}
+	
+	public String getName(int piece)
+	{
+		return names.get(piece);
+	}
+	
+	public int getCopies(int piece)
+	{
+		return copies.get(piece);
+	}
+	
+	public Shape getShape(int piece)
+	{
+		return shapes.get(piece);
+	}
+	
+	// cells covered by every copy of every piece; has to equal the board's
+	public int getArea()
+	{
+		int area = 0;
+		for (int p = 0; p < shapes.size(); p++)
+			area += shapes.get(p).getSize() * copies.get(p);
+		return area;
+	}
+	
+	// red cells over every copy of every piece; a reference needs exactly this many
+	public int getNumRed()
+	{
+		int red = 0;
+		for (int p = 0; p < shapes.size(); p++)
+			red += shapes.get(p).getNumRed() * copies.get(p);
+		return red;
+	}
+	
+	// the orientations of a piece that look different, in Piece's order (turns, then turned over and turned)
+	public ArrayList<Shape> getOrientations(int piece)
+	{
+		ArrayList<Shape> distinct = new ArrayList<Shape>();
+		Shape s = shapes.get(piece);
+		for (int side = 0; side < (flips ? 2 : 1); side++)
+		{
+			for (int turn = 0; turn < 4; turn++)
+			{
+				boolean seen = false;
+				for (Shape d : distinct)
+					seen |= d.looksLike(s);
+				if (!seen)
+					distinct.add(s);
+				s = s.rotateCW();
+			}
+			s = s.flip();
+		}
+		return distinct;
+	}
+	
+	// the set as a definition file
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		if (flips)
+			sb.append("flips\n");
+		for (int p = 0; p < shapes.size(); p++)
+		{
+			sb.append("piece ").append(names.get(p));
+			if (copies.get(p) != 1)
+				sb.append(' ').append(copies.get(p));
+			sb.append('\n').append(shapes.get(p)).append('\n');
+		}
+		return sb.toString();
+	}
+}
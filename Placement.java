@@ -0,0 +1,61 @@
+// one in-bounds position of one piece: which piece, its orientation, its origin on the board and the cells it covers
+// immutable so the same instances can be shared between searches
+public final class Placement
+{
+	private final int piece;		// index of the piece in its PlacementTable (Piece.PieceType ordinal for the standard set)
+	private final int orientation;	// see Piece.setOrientation: 0-3 rotations, 4-7 flipped and rotated
+	private final int row, col;		// origin of the piece on the board
+	private final long cells;		// bitboard of covered cells
+	private final long redCells;	// bitboard of covered cells that are red
+	
+	public Placement(int piece, int orientation, int row, int col, long cells, long redCells)
+	{
+		this.piece = piece;
+		this.orientation = orientation;
+		this.row = row;
+		this.col = col;
+		this.cells = cells;
+		this.redCells = redCells;
+	}
+	
+	public int getPiece()
+	{
+		return piece;
+	}
+	
+	public int getOrientation()
+	{
+		return orientation;
+	}
+	
+	public int getRow()
+	{
+		return row;
+	}
+	
+	public int getCol()
+	{
+		return col;
+	}
+	
+	public long getCells()
+	{
+		return cells;
+	}
+	
+	public long getRedCells()
+	{
+		return redCells;
+	}
+	
+	// true if the piece's colors agree with the reference on every cell it covers
+	public boolean matches(long refRed)
+	{
+		return (refRed & cells) == redCells;
+	}
+	
+	public String toString()
+	{
+		return piece + "@" + row + "," + col + "/" + orientation;
+	}
+}
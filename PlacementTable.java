@@ -0,0 +1,160 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// every in-bounds placement of every piece, computed once from Piece's orientations so the search
+// doesn't have to rotate pieces or recompute their cells
+// only orientations that look different are used, so symmetric pieces (SQUARE, the lines, the singles) aren't tried twice
+public class PlacementTable
+{
+	public static final PlacementTable STANDARD = new PlacementTable(Piece.PieceType.values(), false);
+	public static final PlacementTable TWO_SIDED = new PlacementTable(Piece.PieceType.values(), true);	// pieces may be turned over
+	
+	private final Piece.PieceType[] types;
+	private final Placement[][] placements;		// [piece][placement], in anchor-then-orientation order
+	private final int numRed;					// red cells over all pieces
+	private final int numPlacements;
+	private final int numOutOfBounds;			// (piece, orientation, origin) combinations that don't fit on the board
+	private final HashMap<Long, Placement[]> byCells;	// every placement covering exactly a given set of cells
+	
+	// flips = whether pieces may also be placed mirrored
+	public PlacementTable(Piece.PieceType[] types, boolean flips)
+	{
+		this.types = types.clone();
+		this.placements = new Placement[types.length][];
+		int total = 0;
+		int outOfBounds = 0;
+		for (int n = 0; n < types.length; n++)
+		{
+			int[] orientations = new Piece(types[n]).getDistinctOrientations(flips);
+			Piece[] oriented = new Piece[orientations.length];
+			for (int k = 0; k < orientations.length; k++)
+			{
+				oriented[k] = new Piece(types[n]);
+				oriented[k].setOrientation(orientations[k]);
+			}
+			ArrayList<Placement> list = new ArrayList<Placement>();
+			int tried = 0;
+			for (int i = 0; i < Bitboard.SIZE; i++)
+			{
+				for (int j = 0; j < Bitboard.SIZE; j++)
+				{
+					for (Piece p : oriented)
+					{
+						long cells = p.getCellMask(i, j);
+						tried++;
+						if (cells != 0)
+							list.add(new Placement(n, p.getOrientation(), i, j, cells, p.getRedMask(i, j)));
+					}
+				}
+			}
+			placements[n] = list.toArray(new Placement[list.size()]);
+			total += list.size();
+			outOfBounds += tried - list.size();
+		}
+		this.numPlacements = total;
+		this.numOutOfBounds = outOfBounds;
+		int red = 0;
+		for (Placement[] pls : placements)
+			red += Long.bitCount(pls[0].getRedCells());
+		this.numRed = red;
+		
+		HashMap<Long, ArrayList<Placement>> lists = new HashMap<Long, ArrayList<Placement>>();
+		for (Placement[] pls : placements)
+		{
+			for (Placement pl : pls)
+			{
+				ArrayList<Placement> list = lists.get(pl.getCells());
+				if (list == null)
+				{
+					list = new ArrayList<Placement>();
+					lists.put(pl.getCells(), list);
+				}
+				list.add(pl);
+			}
+		}
+		this.byCells = new HashMap<Long, Placement[]>();
+		for (Long cells : lists.keySet())
+			byCells.put(cells, lists.get(cells).toArray(new Placement[0]));
+	}
+	
+	public int getNumPieces()
+	{
+		return types.length;
+	}
+	
+	public int getNumPlacements()
+	{
+		return numPlacements;
+	}
+	
+	// piece positions left out of the table because part of the piece would be off the board
+	public int getNumOutOfBounds()
+	{
+		return numOutOfBounds;
+	}
+	
+	// a reference pattern needs exactly this many red cells to be solvable
+	public int getNumRed()
+	{
+		return numRed;
+	}
+	
+	public Piece.PieceType getType(int piece)
+	{
+		return types[piece];
+	}
+	
+	public Placement[] getPlacements(int piece)
+	{
+		return placements[piece].clone();
+	}
+	
+	// a placement of any piece covering exactly these cells with exactly these red cells, or null if there isn't one
+	public Placement find(long cells, long redCells)
+	{
+		Placement[] candidates = byCells.get(cells);
+		if (candidates != null)
+			for (Placement pl : candidates)
+				if (pl.getRedCells() == redCells)
+					return pl;
+		return null;
+	}
+	
+	// placements of each piece whose colors agree with the reference; the rest can never fit so they are dropped up front
+	public Placement[][] getMatching(long refRed)
+	{
+		Placement[][] matching = new Placement[placements.length][];
+		for (int n = 0; n < placements.length; n++)
+		{
+			ArrayList<Placement> list = new ArrayList<Placement>();
+			for (Placement pl : placements[n])
+				if (pl.matches(refRed))
+					list.add(pl);
+			matching[n] = list.toArray(new Placement[list.size()]);
+		}
+		return matching;
+	}
+	
+	// regroups placements by the lowest cell they cover, keeping piece order within each cell
+	public static Placement[][] byFirstCell(Placement[][] placements)
+	{
+		int numCells = Bitboard.SIZE * Bitboard.SIZE;
+		int[] counts = new int[numCells];
+		for (Placement[] pls : placements)
+			for (Placement pl : pls)
+				counts[Long.numberOfTrailingZeros(pl.getCells())]++;
+		Placement[][] byCell = new Placement[numCells][];
+		for (int c = 0; c < numCells; c++)
+			byCell[c] = new Placement[counts[c]];
+		int[] filled = new int[numCells];
+		for (Placement[] pls : placements)
+		{
+			for (Placement pl : pls)
+			{
+				int c = Long.numberOfTrailingZeros(pl.getCells());
+				byCell[c][filled[c]++] = pl;
+			}
+		}
+		return byCell;
+	}
+}
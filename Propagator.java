@@ -0,0 +1,282 @@
+import java.util.Arrays;
+
+// constraint propagation for a search over the placements that match a reference (see Solver.setPropagation)
+// one pass over the placements still possible (piece not placed, no overlap) builds bit-sliced coverage masks,
+// once = cells at least one of them covers, twice = cells at least two cover (and thrice, for the search to choose
+// a cell by, see getMostConstrainedCell), plus a count per piece; then
+//		an empty cell outside once, or a piece with no placement left, is a dead end
+//		an empty cell in once but not twice, or a piece with one placement left, can only be filled one way, so that
+//		placement is forced: it's added and the pass repeats until nothing more is forced
+// forcing only adds placements every solution from this board has to use, so no solution is lost
+// the placements still possible are kept per level of the search, each level filtered from the one above it,
+// so a pass deep in the search only looks at the few placements that are left there
+public class Propagator
+{
+	private static final long BOARD = -1L;		// all 64 cells, so one no placement can cover is a dead end at once
+	private static final int COUNT_BITS = 7;	// placements over a cell getMostConstrainedCell counts up to (127)
+	
+	private Placement[][] placements;			// per piece, every placement matching the reference
+	// per level: the cells and index (into placements[piece]) of each placement still possible, grouped by piece,
+	// with piece p's from ends[level][p-1] (0 for p = 0) up to ends[level][p]
+	// a level's arrays are made the first time it's used and kept for the next pattern, so a reused solver allocates nothing
+	private final long[][] cells;
+	private final short[][] index;
+	private final int[][] ends;
+	private int level;							// the newest level; 0 holds every placement
+	private final Placement[] forced;
+	private int numForced;
+	private long occupied, usedPieces;			// the board with the forced placements added
+	private long thrice;						// cells at least three placements of the newest level cover
+	private final long[] count = new long[COUNT_BITS];	// per bit, the cells whose count has it (getMostConstrainedCell)
+	
+	public Propagator(int numPieces)
+	{
+		int levels = numPieces + 2;				// one per piece placed, plus the start and the pattern's placements
+		this.cells = new long[levels][];
+		this.index = new short[levels][];
+		this.ends = new int[levels][numPieces];
+		this.forced = new Placement[numPieces];
+	}
+	
+	// starts over on a new pattern: placements = per piece, every placement matching its reference
+	public void reset(Placement[][] placements)
+	{
+		this.placements = placements;
+		int total = 0;
+		for (Placement[] pls : placements)
+			total += pls.length;
+		ensureCapacity(0, total);
+		int k = 0;
+		for (int p = 0; p < placements.length; p++)
+		{
+			for (int i = 0; i < placements[p].length; i++, k++)
+			{
+				cells[0][k] = placements[p][i].getCells();
+				index[0][k] = (short)i;
+			}
+			ends[0][p] = k;
+		}
+		this.level = 0;
+	}
+	
+	// false if the board can't be completed; otherwise the search has to add getForced(0 .. getNumForced()-1), in order,
+	// and call pop() when it takes them back off (a false result leaves nothing to undo)
+	// occupied and usedPieces have to be the board of the last successful propagate, with placements added since
+	public boolean propagate(long occupied, long usedPieces)
+	{
+		this.occupied = occupied;
+		this.usedPieces = usedPieces;
+		this.numForced = 0;
+		int from = level;
+		int to = level + 1;
+		ensureCapacity(to, ends[from][ends[from].length - 1]);
+		while (true)
+		{
+			long startOccupied = this.occupied;
+			long startUsed = this.usedPieces;
+			long once = 0, twice = 0, thrice = 0;
+			long[] fromCells = cells[from], toCells = cells[to];
+			short[] fromIndex = index[from], toIndex = index[to];
+			int[] fromEnds = ends[from], toEnds = ends[to];
+			int k = 0;
+			int kept = 0;
+			for (int p = 0; p < fromEnds.length; p++)
+			{
+				int end = fromEnds[p];
+				if ((startUsed & (1L << p)) != 0)
+				{
+					k = end;
+					toEnds[p] = kept;
+					continue;
+				}
+				int first = kept;
+				for (; k < end; k++)			// to may be from: kept never passes k, so this is safe in place
+				{
+					long c = fromCells[k];
+					if ((startOccupied & c) != 0)
+						continue;
+					thrice |= twice & c;
+					twice |= once & c;
+					once |= c;
+					toCells[kept] = c;
+					toIndex[kept++] = fromIndex[k];
+				}
+				toEnds[p] = kept;
+				if (kept == first)
+					return false;
+			}
+			long empty = BOARD & ~startOccupied;
+			if ((empty & ~once) != 0)
+				return false;
+			
+			int start = 0;
+			for (int p = 0; p < toEnds.length; p++)
+			{
+				if (toEnds[p] - start == 1 && !force(placements[p][toIndex[start]]))
+					return false;
+				start = toEnds[p];
+			}
+			for (long single = empty & ~twice; single != 0; single &= single - 1)
+			{
+				long cell = single & -single;
+				if ((this.occupied & cell) != 0)		// forced already this pass, by the only placement it has
+					continue;
+				if (!force(coverOf(cell, to)))
+					return false;
+			}
+			if (this.usedPieces == startUsed)
+			{
+				level = to;
+				this.thrice = thrice;
+				return true;
+			}
+			from = to;								// filter the next pass in place
+		}
+	}
+	
+	// drops the level of the last successful propagate, for when the search backs up past it
+	public void pop()
+	{
+		level--;
+	}
+	
+	private void ensureCapacity(int lv, int size)
+	{
+		if (cells[lv] == null || cells[lv].length < size)
+		{
+			cells[lv] = new long[size];
+			index[lv] = new short[size];
+		}
+	}
+	
+	// the placements of piece still possible on the board of the last successful propagate, copied into into;
+	// returns how many there are (none overlap that board)
+	public int getPossible(int piece, Placement[] into)
+	{
+		int start = piece == 0 ? 0 : ends[level][piece - 1];
+		int end = ends[level][piece];
+		short[] lvIndex = index[level];
+		Placement[] pls = placements[piece];
+		for (int k = start; k < end; k++)
+			into[k - start] = pls[lvIndex[k]];
+		return end - start;
+	}
+	
+	// how many placements getPossible would give
+	public int getNumPossible(int piece)
+	{
+		return ends[level][piece] - (piece == 0 ? 0 : ends[level][piece - 1]);
+	}
+	
+	// the piece not in usedPieces with the fewest placements still possible; ties go to the lower index
+	public int getMostConstrained(long usedPieces)
+	{
+		int best = -1;
+		int fewest = Integer.MAX_VALUE;
+		for (int p = 0; p < ends[level].length; p++)
+		{
+			if ((usedPieces & (1L << p)) != 0)
+				continue;
+			int count = getNumPossible(p);
+			if (count < fewest)
+			{
+				best = p;
+				fewest = count;
+			}
+		}
+		return best;
+	}
+	
+	// the empty cell with the fewest placements still possible covering it, on the board of the last successful
+	// propagate, if fewer than fewerThan cover it (ties go to the lower cell); otherwise -1
+	// every empty cell has two at least, or the pass would have forced its only one, and thrice picks out those with
+	// exactly two, so the placements are only counted when a piece has more than three left; they're counted per
+	// cell in binary, one bit-sliced mask per bit, and a cell that 128 or more cover is never chosen
+	public int getMostConstrainedCell(int fewerThan)
+	{
+		if (fewerThan <= 2)
+			return -1;
+		long empty = BOARD & ~occupied;
+		long two = empty & ~thrice;
+		if (two != 0)
+			return Long.numberOfTrailingZeros(two);
+		if (fewerThan <= 3)
+			return -1;
+		long[] count = this.count;
+		Arrays.fill(count, 0);
+		long over = 0;
+		long[] lvCells = cells[level];
+		int end = ends[level][ends[level].length - 1];
+		for (int k = 0; k < end; k++)
+		{
+			long carry = lvCells[k];				// add one to each cell the placement covers
+			for (int i = 0; carry != 0 && i < COUNT_BITS; i++)
+			{
+				long next = count[i] & carry;
+				count[i] ^= carry;
+				carry = next;
+			}
+			over |= carry;
+		}
+		long fewest = empty & ~over;				// narrowed bit by bit, from the top, to the cells with the lowest count
+		for (int i = COUNT_BITS - 1; i >= 0; i--)
+			if ((fewest & ~count[i]) != 0)
+				fewest &= ~count[i];
+		if (fewest == 0)
+			return -1;
+		int cell = Long.numberOfTrailingZeros(fewest);
+		int n = 0;
+		for (int i = 0; i < COUNT_BITS; i++)
+			n |= (int)((count[i] >>> cell) & 1) << i;
+		return n < fewerThan ? cell : -1;
+	}
+	
+	// the placements still possible covering cell on the board of the last successful propagate, of any piece,
+	// copied into into; returns how many there are
+	public int getCovering(int cell, Placement[] into)
+	{
+		long bit = 1L << cell;
+		long[] lvCells = cells[level];
+		short[] lvIndex = index[level];
+		int n = 0;
+		int k = 0;
+		for (int p = 0; p < ends[level].length; p++)
+			for (; k < ends[level][p]; k++)
+				if ((lvCells[k] & bit) != 0)
+					into[n++] = placements[p][lvIndex[k]];
+		return n;
+	}
+	
+	public int getNumForced()
+	{
+		return numForced;
+	}
+	
+	public Placement getForced(int k)
+	{
+		return forced[k];
+	}
+	
+	// false if pl clashes with another placement forced in the same pass: both are needed, so there's no solution
+	private boolean force(Placement pl)
+	{
+		long c = pl.getCells();
+		if ((usedPieces & (1L << pl.getPiece())) != 0 || (occupied & c) != 0)
+			return false;
+		occupied |= c;
+		usedPieces |= 1L << pl.getPiece();
+		forced[numForced++] = pl;
+		return true;
+	}
+	
+	// the one placement at level lv covering cell
+	private Placement coverOf(long cell, int lv)
+	{
+		int k = 0;
+		for (int p = 0; p < ends[lv].length; p++)
+			for (; k < ends[lv][p]; k++)
+				if ((cells[lv][k] & cell) != 0)
+					return placements[p][index[lv][k]];
+		throw new IllegalStateException("no placement covers a cell the coverage masks say one does");
+	}
+}
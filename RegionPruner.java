@@ -0,0 +1,104 @@
+import java.util.Arrays;
+
+// prunes boards whose empty cells split into regions the remaining pieces can't fill
+// a region is rejected if no subset of the remaining pieces has both its size and its red/black imbalance
+// (only T, T_INV, LINE_3, LINE_3_INV, CORNER, CORNER_INV and the single squares have an imbalance)
+// this is necessary for a region to be fillable, not sufficient, but it cuts dead subtrees well before the holes heuristic
+public class RegionPruner
+{
+	public static final int MAX_RADIUS = 4;
+	
+	private final long refRed;
+	private final int[] sizes;			// cells in each piece
+	private final int[] balances;		// red cells - black cells in each piece
+	private final int maxBalance;		// sum of |balances|, the furthest any subset can be from 0
+	private final long[][] reach;		// per number of used pieces: reach[b + maxBalance] = bitset of subset sizes with imbalance b
+	private final long[] reachFor;		// per number of used pieces: the usedPieces mask reach was computed for
+	
+	public RegionPruner(PlacementTable table, long refRed)
+	{
+		this.refRed = refRed;
+		int n = table.getNumPieces();
+		this.sizes = new int[n];
+		this.balances = new int[n];
+		int max = 0;
+		for (int p = 0; p < n; p++)
+		{
+			Placement pl = table.getPlacements(p)[0];
+			sizes[p] = Long.bitCount(pl.getCells());
+			balances[p] = 2*Long.bitCount(pl.getRedCells()) - sizes[p];
+			max += Math.abs(balances[p]);
+		}
+		this.maxBalance = max;
+		this.reach = new long[n + 1][2*max + 1];	// siblings in the search share a used set, so keep one per depth
+		this.reachFor = new long[n + 1];
+		Arrays.fill(reachFor, -1);
+	}
+	
+	// usedPieces = bitmask of the pieces already on the board, placed = the cells covered since the last check
+	// only regions touching placed can have changed, and it's the small ones that turn out unfillable, so regions are
+	// grown from the empty neighbours of placed and given up on (assumed fine) once they reach MAX_RADIUS
+	public boolean isFeasible(long occupied, long usedPieces, long placed)
+	{
+		long empty = ~occupied;
+		long seeds = Bitboard.neighbours(placed) & empty;
+		long[] sums = null;
+		while (seeds != 0)
+		{
+			long region = fill(seeds & -seeds, empty);
+			seeds &= ~region;
+			if ((Bitboard.neighbours(region) & empty & ~region) != 0 || region == empty)	// still growing, or the only region
+				continue;
+			if (sums == null)
+				sums = getReach(usedPieces);
+			int size = Long.bitCount(region);
+			int balance = 2*Long.bitCount(region & refRed) - size;
+			if (balance < -maxBalance || balance > maxBalance || (sums[balance + maxBalance] & (1L << size)) == 0)
+				return false;
+		}
+		return true;
+	}
+	
+	// grows seed through the empty cells around it, one ring of neighbours at a time, for at most MAX_RADIUS rings
+	private static long fill(long seed, long empty)
+	{
+		long region = seed;
+		for (int r = 0; r < MAX_RADIUS; r++)
+		{
+			long prev = region;
+			region |= Bitboard.neighbours(region) & empty;
+			if (region == prev)
+				break;
+		}
+		return region;
+	}
+	
+	// subset-sum over the unused pieces, tracking size and imbalance together
+	private long[] getReach(long usedPieces)
+	{
+		int depth = Long.bitCount(usedPieces);
+		long[] reach = this.reach[depth];
+		if (reachFor[depth] == usedPieces)
+			return reach;
+		reachFor[depth] = usedPieces;
+		Arrays.fill(reach, 0);
+		reach[maxBalance] = 1;					// the empty subset
+		for (int p = 0; p < sizes.length; p++)
+		{
+			if ((usedPieces & (1L << p)) != 0)
+				continue;
+			int s = sizes[p];
+			int b = balances[p];
+			if (b > 0)							// walk away from the direction we write in, so each piece is used once
+				for (int v = reach.length - 1 - b; v >= 0; v--)
+					reach[v + b] |= reach[v] << s;
+			else if (b < 0)
+				for (int v = -b; v < reach.length; v++)
+					reach[v + b] |= reach[v] << s;
+			else
+				for (int v = 0; v < reach.length; v++)
+					reach[v] |= reach[v] << s;
+		}
+		return reach;
+	}
+}
@@ -0,0 +1,66 @@
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// limits on one solve: a wall-clock deadline and/or a number of steps, shared by every thread working on it
+// an engine doesn't look at the clock each step: it charges its steps here in batches (about CHECK_INTERVAL at a time)
+// and stops at the first check after a limit is passed, so a node only costs a comparison with the next checkpoint
+// holds the steps charged so far, so use a new one for each solve (NONE, with no limits, is the exception)
+public final class SearchLimits
+{
+	public static final int CHECK_INTERVAL = 4096;	// steps between checks, ~50 us of searching
+	public static final SearchLimits NONE = new SearchLimits(Long.MAX_VALUE, Long.MAX_VALUE);
+	
+	private final long deadline;			// System.nanoTime() to stop at, Long.MAX_VALUE for none
+	private final long maxSteps;			// Long.MAX_VALUE for none
+	private final AtomicLong spent = new AtomicLong();
+	
+	// deadline as a System.nanoTime() value, so time spent waiting in a queue counts too
+	public SearchLimits(long deadline, long maxSteps)
+	{
+		this.deadline = deadline;
+		this.maxSteps = maxSteps;
+	}
+	
+	// a deadline timeoutMillis from now and/or a step budget; 0 or less for either means no limit
+	public static SearchLimits of(long timeoutMillis, long maxSteps)
+	{
+		return new SearchLimits(timeoutMillis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : Long.MAX_VALUE,
+				maxSteps > 0 ? maxSteps : Long.MAX_VALUE);
+	}
+	
+	public long getDeadline()
+	{
+		return deadline;
+	}
+	
+	public long getMaxSteps()
+	{
+		return maxSteps;
+	}
+	
+	// adds steps taken since the last charge; returns why the search has to stop (TIMED_OUT or STEP_LIMIT), or null
+	public SolveResult.Status charge(long steps)
+	{
+		if (maxSteps != Long.MAX_VALUE && spent.addAndGet(steps) >= maxSteps)
+			return SolveResult.Status.STEP_LIMIT;
+		if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0)
+			return SolveResult.Status.TIMED_OUT;
+		return null;
+	}
+	
+	// steps to take before the next charge: CHECK_INTERVAL, or fewer near the end of the budget
+	// engines check as they enter a node, so one thread overshoots by at most a node's candidates
+	// (threads sharing a budget can also overshoot by their batches in flight)
+	public long nextCheck()
+	{
+		if (maxSteps == Long.MAX_VALUE)
+			return CHECK_INTERVAL;
+		return Math.max(1, Math.min(CHECK_INTERVAL, maxSteps - spent.get()));
+	}
+	
+	public String toString()
+	{
+		return "deadline " + (deadline == Long.MAX_VALUE ? "none" : String.format("%.1f ms", (deadline - System.nanoTime()) / 1e6))
+				+ ", max steps " + (maxSteps == Long.MAX_VALUE ? "none" : Long.toString(maxSteps));
+	}
+}
@@ -0,0 +1,220 @@
+import java.util.Arrays;
+
+// counters for one search, or the sum of many (see add): how much the search tried and why it turned placements down
+// each engine keeps its own while it runs, so the hot path only writes to memory no other thread touches;
+// SolverStats adds them up once the search is over
+public class SearchStats
+{
+	private long[] nodes;			// placements fitted at each depth (the number of pieces placed before them)
+	private long attempted;			// placements tried, the same as SolveResult's steps
+	private long outOfBounds;		// piece positions that would stick off the board, dropped when the PlacementTable was built
+	private long colorMismatches;	// placements dropped before the search because their colors don't match the reference
+	private long holes;				// fitted placements rejected for leaving more than two 1x1 holes
+	private long regions;			// fitted placements rejected by RegionPruner
+	private long deadEnds;			// boards where some cell or piece had nothing left to cover it (Dancing Links, propagation)
+	private long forced;			// placements added by propagation because nothing else could fill a cell or place a piece
+	private long backtracks;		// fitted placements taken back off after searching below them
+	private long nanos;				// wall time
+	private long searches;			// number of searches added up here
+	
+	// depths = number of pieces
+	public SearchStats(int depths)
+	{
+		this.nodes = new long[depths];
+	}
+	
+	// the engines count as they go with these
+	void fit(int depth)
+	{
+		nodes[depth]++;
+	}
+	
+	void hole()
+	{
+		holes++;
+	}
+	
+	void region()
+	{
+		regions++;
+	}
+	
+	void deadEnd()
+	{
+		deadEnds++;
+	}
+	
+	void forced()
+	{
+		forced++;
+	}
+	
+	void backtrack()
+	{
+		backtracks++;
+	}
+	
+	// called once at the end of a search
+	void finish(long steps, long nanos)
+	{
+		this.attempted += steps;
+		this.nanos += nanos;
+		this.searches++;
+	}
+	
+	// placements that never made it into the search for the reference that matching came from
+	void filtered(PlacementTable table, Placement[][] matching)
+	{
+		int kept = 0;
+		for (Placement[] pls : matching)
+			kept += pls.length;
+		filtered(table.getNumOutOfBounds(), table.getNumPlacements() - kept);
+	}
+	
+	void filtered(long outOfBounds, long colorMismatches)
+	{
+		this.outOfBounds += outOfBounds;
+		this.colorMismatches += colorMismatches;
+	}
+	
+	// adds other's counts to this one's
+	public void add(SearchStats other)
+	{
+		addCounts(other);
+		attempted += other.attempted;
+		nanos += other.nanos;
+		searches += other.searches;
+	}
+	
+	// adds other's counts, but not its steps, time or number of searches, for a search split into parts that run at once
+	// (the caller adds up the steps itself and calls finish)
+	void addCounts(SearchStats other)
+	{
+		if (other.nodes.length > nodes.length)
+			nodes = Arrays.copyOf(nodes, other.nodes.length);
+		for (int d = 0; d < other.nodes.length; d++)
+			nodes[d] += other.nodes[d];
+		outOfBounds += other.outOfBounds;
+		colorMismatches += other.colorMismatches;
+		holes += other.holes;
+		regions += other.regions;
+		deadEnds += other.deadEnds;
+		forced += other.forced;
+		backtracks += other.backtracks;
+	}
+	
+	public SearchStats getCopy()
+	{
+		SearchStats copy = new SearchStats(0);
+		copy.add(this);
+		return copy;
+	}
+	
+	public long[] getNodes()
+	{
+		return nodes.clone();
+	}
+	
+	public long getNodes(int depth)
+	{
+		return depth < nodes.length ? nodes[depth] : 0;
+	}
+	
+	// placements that fit and passed to the next level of the search, or were rejected by a heuristic
+	public long getFitted()
+	{
+		long sum = 0;
+		for (long n : nodes)
+			sum += n;
+		return sum;
+	}
+	
+	public long getAttempted()
+	{
+		return attempted;
+	}
+	
+	public long getOutOfBounds()
+	{
+		return outOfBounds;
+	}
+	
+	public long getColorMismatches()
+	{
+		return colorMismatches;
+	}
+	
+	// placements tried that overlapped a placed piece (cell-first: or whose piece was already placed)
+	// every placement tried either overlaps or fits, so this isn't counted on the hot path
+	public long getOverlaps()
+	{
+		return attempted - getFitted();
+	}
+	
+	public long getHoleRejections()
+	{
+		return holes;
+	}
+	
+	public long getRegionRejections()
+	{
+		return regions;
+	}
+	
+	public long getDeadEnds()
+	{
+		return deadEnds;
+	}
+	
+	public long getForced()
+	{
+		return forced;
+	}
+	
+	public long getBacktracks()
+	{
+		return backtracks;
+	}
+	
+	public long getNanos()
+	{
+		return nanos;
+	}
+	
+	public long getSearches()
+	{
+		return searches;
+	}
+	
+	// placements tried per second of search
+	public double getNodesPerSecond()
+	{
+		return nanos == 0 ? 0 : attempted * 1e9 / nanos;
+	}
+	
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append("searches=").append(searches)
+			.append(" attempted=").append(attempted)
+			.append(" fitted=").append(getFitted())
+			.append(" overlaps=").append(getOverlaps())
+			.append(" holes=").append(holes)
+			.append(" regions=").append(regions)
+			.append(" deadEnds=").append(deadEnds)
+			.append(" forced=").append(forced)
+			.append(" backtracks=").append(backtracks)
+			.append(" colorMismatches=").append(colorMismatches)
+			.append(" outOfBounds=").append(outOfBounds)
+			.append(" ms=").append(String.format("%.3f", nanos / 1e6))
+			.append(" nodes/s=").append(String.format("%.0f", getNodesPerSecond()))
+			.append(" nodes/depth=[");
+		for (int d = 0; d < nodes.length; d++)
+		{
+			if (d > 0)
+				sb.append(' ');
+			sb.append(nodes[d]);
+		}
+		return sb.append(']').toString();
+	}
+}
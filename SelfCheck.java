@@ -0,0 +1,647 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// a quick end-to-end check of the search code, to run after a change: each line of output is "ok <check>" or
+// "FAIL <check>: <why>", and it exits with 1 if anything failed
+//		- every engine gives the known answer for solvable, unsolvable and uneven patterns, and every solution it reports
+//		  is checked against the pattern (each piece once, on cells that match, covering the board)
+//		- SolutionEnumerator finds each tiling once, and a walk saved with checkpoint() and resumed (with and without a
+//		  solution pending) carries on the same sequence with the same counts and steps; pause() stops countRest but
+//		  never hasNext
+//		- SolutionCache answers all 16 symmetric images of a stored pattern with a solution of that image
+//		- PatternGenerator's tilings are valid, and each edge of the board is as likely as the others to be an alternating
+//		  row or column (which LINE_8 along that edge gives)
+//		- a TilingDatabase built with a limit holds sorted, distinct patterns whose tilings reproduce them, answers them
+//		  SOLVED, hands misses to its fallback, and a file for another set of pieces is turned down
+//		- AsyncSolver stops a search at its step budget or deadline, and a cancelled solve frees its thread
+//		- LatencyHistogram's percentiles are within 12.5% above the true ones and never above the largest value
+//		- SolveServer answers solved, uneven, cached and malformed requests, and 503 when its one search slot stays taken
+//		  past a request's deadline
+//		- BatchSolver reports a bad line as an ERROR record of its own, and the records after it are read as they should be
+//
+// usage: java SelfCheck
+public class SelfCheck
+{
+	// name, pattern, expected status
+	private static final Object[][] PATTERNS = {
+		{"checkerboard",		"brbrbrbrrbrbrbrbbrbrbrbrrbrbrbrbbrbrbrbrrbrbrbrbbrbrbrbrrbrbrbrb", SolveResult.Status.SOLVED},
+		{"inverted",			"rbrbrbrbbrbrbrbrrbrbrbrbbrbrbrbrrbrbrbrbbrbrbrbrrbrbrbrbbrbrbrbr", SolveResult.Status.SOLVED},
+		{"random-1",			"brbrrbrrrbrrbrbbrbrbbrbrbrbrrbrbbbrbrrbbrbrbrbrrbrbbrbrbrbrbrbrb", SolveResult.Status.SOLVED},
+		{"random-2",			"rrbrbrrbbrbbrbrrrbbbrrbbbbrrbbbrrbrbrbrbbrrbbrrrrbbrbrbrbrbrbrbr", SolveResult.Status.SOLVED},
+		{"unsolvable-halves",	"rrrrrrrrrrrrrrrrrrrrrrrrrrrrrrrrbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb", SolveResult.Status.NO_SOLUTION},
+		{"unsolvable-swap",		"rrbrrbrrrbrrbrbbrbrbbrbrbrbrrbrbbbrbrrbbrbrbrbrbbrbbrbrbrbrbrbrb", SolveResult.Status.NO_SOLUTION},
+		{"uneven",				"rrbrbrbrrbrbrbrbbrbrbrbrrbrbrbrbbrbrbrbrrbrbrbrbbrbrbrbrrbrbrbrb", SolveResult.Status.UNEVEN_COLORS},
+	};
+	
+	private int checks, failures;
+	
+	public static void main(String[] args) throws Exception
+	{
+		SelfCheck c = new SelfCheck();
+		c.engines();
+		c.enumerator("random-2", 87);
+		c.checkpoints("random-1", 6654);
+		c.pause("random-2", 87);
+		c.cache();
+		c.generator(20000);
+		c.batch();
+		c.database(20000);
+		c.async();
+		c.histogram();
+		c.server();
+		System.out.println(c.checks + " checks, " + c.failures + " failed");
+		if (c.failures > 0)
+			System.exit(1);
+	}
+	
+	private void check(String name, String failure)
+	{
+		checks++;
+		if (failure == null)
+			System.out.println("ok " + name);
+		else
+		{
+			failures++;
+			System.out.println("FAIL " + name + ": " + failure);
+		}
+	}
+	
+	private static long pattern(String name)
+	{
+		for (Object[] p : PATTERNS)
+			if (p[0].equals(name))
+				return Bitboard.parsePattern((String)p[1]);
+		throw new IllegalArgumentException(name);
+	}
+	
+	// each engine on each pattern
+	private void engines()
+	{
+		String[] names = {"dfs", "dfs-noprop", "cells", "cells-noprop", "parallel", "dlx"};
+		for (String engine : names)
+		{
+			for (Object[] p : PATTERNS)
+			{
+				long refRed = Bitboard.parsePattern((String)p[1]);
+				SolveResult r = makeEngine(engine).solve(refRed);
+				String failure = null;
+				if (r.getStatus() != p[2])
+					failure = "expected " + p[2] + ", got " + r.getStatus();
+				else if (r.isSolved())
+					failure = invalid(r.getSolution(), refRed);
+				check(engine + " " + p[0], failure);
+			}
+		}
+		WideSolver wide = new WideSolver(PieceSet.standard(), Bitboard.SIZE, Bitboard.SIZE);
+		for (Object[] p : PATTERNS)
+		{
+			long[] refRed = wide.parsePattern((String)p[1]);
+			SolveResult r = wide.solve(refRed);
+			String failure = null;
+			if (r.getStatus() != p[2])
+				failure = "expected " + p[2] + ", got " + r.getStatus();
+			else if (r.isSolved())
+				failure = invalid(wide.getSolution(), refRed, wide.getPieceSet());
+			check("wide " + p[0], failure);
+		}
+	}
+	
+	private static SolverEngine makeEngine(String name)
+	{
+		if (name.equals("parallel"))
+			return new ParallelSolver();
+		if (name.equals("dlx"))
+			return new DancingLinksSolver();
+		Solver s = new Solver();
+		if (name.startsWith("cells"))
+			s.setStrategy(Solver.Strategy.CELL_FIRST);
+		if (name.endsWith("-noprop"))
+			s.setPropagation(false);
+		return s;
+	}
+	
+	// why s isn't a tiling matching refRed, or null if it is
+	private static String invalid(Solution s, long refRed)
+	{
+		if (s == null)
+			return "no solution";
+		Placement[][] matching = PlacementTable.STANDARD.getMatching(refRed);
+		long covered = 0;
+		for (int piece = 0; piece < matching.length; piece++)
+		{
+			Placement pl = s.getPlacement(piece);
+			if (pl == null)
+				return "piece " + piece + " isn't placed";
+			boolean found = false;
+			for (Placement m : matching[piece])
+				if (m.getCells() == pl.getCells() && m.getRedCells() == pl.getRedCells())
+					found = true;
+			if (!found)
+				return "piece " + piece + " at " + pl + " isn't a matching placement";
+			if ((covered & pl.getCells()) != 0)
+				return "piece " + piece + " at " + pl + " overlaps another";
+			covered |= pl.getCells();
+		}
+		if (covered != -1L)
+			return "the board isn't covered";
+		return null;
+	}
+	
+	private static String invalid(WidePlacement[] solution, long[] refRed, PieceSet set)
+	{
+		if (solution == null)
+			return "no solution";
+		int[] copies = new int[set.getNumPieces()];
+		long[] board = new long[refRed.length];
+		for (WidePlacement pl : solution)
+		{
+			if (pl.overlaps(board))
+				return pl + " overlaps another piece";
+			if (!pl.matches(refRed))
+				return pl + " doesn't match the pattern";
+			pl.toggle(board);
+			copies[pl.getPiece()]++;
+		}
+		for (int piece = 0; piece < copies.length; piece++)
+			if (copies[piece] != set.getCopies(piece))
+				return set.getName(piece) + " is placed " + copies[piece] + " times";
+		for (long word : board)
+			if (word != -1L)
+				return "the board isn't covered";
+		return null;
+	}
+	
+	// every solution is valid and different, and there are as many as count() says
+	private void enumerator(String name, long expected)
+	{
+		long refRed = pattern(name);
+		SolutionEnumerator e = new SolutionEnumerator(refRed);
+		ArrayList<String> seen = new ArrayList<String>();
+		String failure = null;
+		for (Solution s : e)
+		{
+			String why = invalid(s, refRed);
+			if (why != null && failure == null)
+				failure = why;
+			String text = s.toString();
+			if (seen.contains(text) && failure == null)
+				failure = "a solution came out twice";
+			seen.add(text);
+		}
+		long counted = e.count();
+		if (failure == null && (seen.size() != expected || counted != expected))
+			failure = "expected " + expected + " solutions, iterated " + seen.size() + " and counted " + counted;
+		check("enumerator " + name, failure);
+	}
+	
+	// a walk checkpointed and resumed every so often gives the same solutions and steps as one that isn't
+	private void checkpoints(String name, long expected) throws IOException
+	{
+		long refRed = pattern(name);
+		SolutionEnumerator e = new SolutionEnumerator(refRed);
+		long total = e.count();
+		long steps = e.getCountSteps();
+		File file = File.createTempFile("selfcheck", ".ckpt");
+		file.deleteOnExit();
+		
+		// counting in chunks, resumed from the file after each
+		SolutionEnumerator.SolutionIterator it = e.iterator();
+		long counted = 0;
+		while (!it.isDone())
+		{
+			counted += it.countRest(expected / 7);
+			it.checkpoint(file);
+			it = e.resume(file);
+		}
+		String failure = null;
+		if (total != expected || counted != expected || it.getFound() != expected || it.getSteps() != steps)
+			failure = "expected " + expected + " solutions and " + steps + " steps, counted " + total + ", resumed "
+					+ counted + " (" + it.getFound() + " found) and " + it.getSteps() + " steps";
+		check("checkpoint counts " + name, failure);
+		
+		// saved with a solution found by hasNext but not yet returned, which next() has to return after resuming
+		ArrayList<String> all = new ArrayList<String>();
+		for (Solution s : e)
+			all.add(s.toString());
+		ArrayList<String> resumed = new ArrayList<String>();
+		it = e.iterator();
+		while (it.hasNext())
+		{
+			if (resumed.size() % 1000 == 500)
+			{
+				it.checkpoint(file);
+				it = e.resume(file);
+			}
+			resumed.add(it.next().toString());
+		}
+		check("checkpoint sequence " + name, resumed.equals(all) ? null : "the resumed walk came out in another order");
+		file.delete();
+	}
+	
+	// a pause stops countRest, which isPaused then reports, but not hasNext, which is false only at the end of the walk
+	private void pause(String name, long expected)
+	{
+		SolutionEnumerator e = new SolutionEnumerator(pattern(name));
+		SolutionEnumerator.SolutionIterator it = e.iterator();
+		it.pause();
+		long counted = it.countRest();
+		String failure = null;
+		if (counted != 0 || !it.isPaused() || it.isDone())
+			failure = "a paused count went on (" + counted + " counted)";
+		while (failure == null && !it.isDone())
+		{
+			counted += it.countRest(expected / 3);
+			if (it.isPaused())
+				failure = "a count that wasn't paused says it was";
+		}
+		if (failure == null && counted != expected)
+			failure = "expected " + expected + " solutions, counted " + counted + " around a pause";
+		check("pause count " + name, failure);
+		
+		it = e.iterator();
+		it.pause();
+		long iterated = 0;
+		while (it.hasNext())
+		{
+			it.next();
+			if (++iterated % 10 == 0)
+				it.pause();
+		}
+		check("pause iteration " + name, iterated == expected ? null : "expected " + expected + " solutions, iterated " + iterated);
+	}
+	
+	// one pattern of each status is stored, and each is looked up under every symmetry
+	private void cache()
+	{
+		String[] names = {"random-2", "unsolvable-swap"};
+		for (String name : names)
+		{
+			long refRed = pattern(name);
+			SolutionCache cache = new SolutionCache(16);
+			SolveResult stored = new DancingLinksSolver().solve(refRed);
+			cache.store(refRed, stored);
+			for (int form = 0; form < 2 * Bitboard.NUM_SYMMETRIES; form++)
+			{
+				long image = Bitboard.transform(refRed, form % Bitboard.NUM_SYMMETRIES);
+				if (form >= Bitboard.NUM_SYMMETRIES)
+					image = ~image;							// red and black swapped
+				SolveResult r = cache.lookup(image);
+				String failure = null;
+				if (r == null)
+					failure = "missed";
+				else if (r.getStatus() != stored.getStatus())
+					failure = "expected " + stored.getStatus() + ", got " + r.getStatus();
+				else if (r.isSolved())
+					failure = invalid(r.getSolution(), image);
+				check("cache " + name + " form " + form, failure);
+			}
+			boolean counted = cache.getHits() == 2 * Bitboard.NUM_SYMMETRIES && cache.getMisses() == 0;
+			check("cache " + name + " counts", counted ? null : "expected " + 2 * Bitboard.NUM_SYMMETRIES + " hits, got " + cache);
+		}
+	}
+	
+	// n seeded tilings are checked, and the edges of the board are compared: the generator gives up on slow searches,
+	// which would leave LINE_8 mostly along the bottom row if the tilings weren't spread over the board's symmetries
+	private void generator(int n)
+	{
+		PatternGenerator.Tiler tiler = new PatternGenerator.Tiler(PlacementTable.STANDARD, new SplittableRandom(1));
+		int[] alternating = new int[4];			// top row, bottom row, left column, right column
+		String failure = null;
+		for (int t = 0; t < n; t++)
+		{
+			Placement[] byPiece = new Placement[PlacementTable.STANDARD.getNumPieces()];
+			long red = 0;
+			for (Placement pl : tiler.next())
+			{
+				byPiece[pl.getPiece()] = pl;
+				red |= pl.getRedCells();
+			}
+			String why = invalid(new Solution(byPiece), red);
+			if (why != null && failure == null)
+				failure = why;
+			long cols = Bitboard.transpose(red);
+			long[] edges = {red, red >>> 56, cols, cols >>> 56};
+			for (int e = 0; e < edges.length; e++)
+				if ((edges[e] & 0xFF) == 0x55 || (edges[e] & 0xFF) == 0xAA)
+					alternating[e]++;
+		}
+		check("generator tilings", failure);
+		int least = Integer.MAX_VALUE, most = 0;
+		for (int a : alternating)
+		{
+			least = Math.min(least, a);
+			most = Math.max(most, a);
+		}
+		check("generator edges", most <= least * 1.15 ? null : "alternating top, bottom, left and right edges in "
+				+ Arrays.toString(alternating) + " of " + n + " tilings");
+	}
+	
+	// a short line between good records, a grid of 8 rows and one cut short: each record's number and status
+	private void batch() throws IOException, InterruptedException
+	{
+		String checkerboard = (String)PATTERNS[0][1];
+		StringBuilder grid = new StringBuilder();
+		for (int i = 0; i < Bitboard.SIZE; i++)
+			grid.append(((String)PATTERNS[1][1]).substring(i * Bitboard.SIZE, (i + 1) * Bitboard.SIZE)).append('\n');
+		String input = checkerboard + "\n" + checkerboard.substring(0, 7) + "\n" + checkerboard + "\n# a comment\n\n"
+				+ checkerboard + "\n" + grid + grid.substring(0, 3 * (Bitboard.SIZE + 1)) + "rbr\n" + checkerboard + "\n";
+		String[] expected = {"SOLVED", "ERROR", "SOLVED", "SOLVED", "SOLVED", "ERROR", "SOLVED"};
+		
+		StringWriter text = new StringWriter();
+		PrintWriter out = new PrintWriter(text);
+		long count = new BatchSolver(2, "dlx", null, out).run(new BufferedReader(new StringReader(input)));
+		out.flush();
+		HashMap<Long, String> statuses = new HashMap<Long, String>();
+		for (String line : text.toString().split("\n"))
+		{
+			String[] f = line.split(" ");
+			statuses.put(Long.parseLong(f[0]), f[1]);
+		}
+		String failure = null;
+		if (count != expected.length)
+			failure = "expected " + expected.length + " records, read " + count;
+		for (int n = 0; n < expected.length && failure == null; n++)
+			if (!expected[n].equals(statuses.get(n + 1L)))
+				failure = "record " + (n + 1) + " is " + statuses.get(n + 1L) + ", expected " + expected[n];
+		check("batch framing", failure);
+	}
+	
+	// a build stopped after limit tilings, in small runs so they have to be merged
+	private void database(long limit) throws IOException, InterruptedException
+	{
+		File dir = Files.createTempDirectory("selfcheck").toFile();
+		File file = new File(dir, "tilings.db");
+		TilingDatabaseBuilder builder = new TilingDatabaseBuilder(PlacementTable.STANDARD, 2, 1000, dir);
+		builder.setLimit(limit);
+		long patterns = builder.build(file);
+		TilingDatabase db = new TilingDatabase(file.getPath());
+		
+		String failure = null;
+		if (db.isComplete() || db.getNumRecords() != patterns || patterns == 0)
+			failure = "expected an incomplete database of " + patterns + " patterns, got " + db;
+		for (long n = 0; n < db.getNumRecords() && failure == null; n++)
+		{
+			long pattern = db.getPattern(n);
+			if (n > 0 && db.getPattern(n - 1) >= pattern)
+				failure = "record " + n + " isn't after the one before it";
+			else if (db.getSolution(n).getRedCells() != pattern)
+				failure = "record " + n + "'s tiling has another pattern";
+			else if (invalid(db.getSolution(n), pattern) != null)
+				failure = "record " + n + ": " + invalid(db.getSolution(n), pattern);
+		}
+		check("database records", failure);
+		
+		failure = null;
+		for (long n = 0; n < db.getNumRecords() && failure == null; n++)
+		{
+			long pattern = db.getPattern(n);
+			SolveResult r = db.solve(pattern);
+			if (r.getStatus() != SolveResult.Status.SOLVED)
+				failure = "record " + n + " came back " + r.getStatus();
+			else if (invalid(r.getSolution(), pattern) != null)
+				failure = "record " + n + ": " + invalid(r.getSolution(), pattern);
+		}
+		check("database hits", failure);
+		
+		// patterns not in it go to the fallback, solvable or not
+		final int[] calls = new int[1];
+		db.setFallback(new SolverEngine()
+		{
+			private final DancingLinksSolver dlx = new DancingLinksSolver();
+			
+			public SolveResult solve(long refRed)
+			{
+				calls[0]++;
+				return dlx.solve(refRed);
+			}
+			
+			public void cancel()
+			{
+				dlx.cancel();
+			}
+			
+			public void setLimits(SearchLimits limits)
+			{
+				dlx.setLimits(limits);
+			}
+		});
+		failure = null;
+		int misses = 0;
+		for (Object[] p : PATTERNS)
+		{
+			long refRed = Bitboard.parsePattern((String)p[1]);
+			if (p[2] == SolveResult.Status.UNEVEN_COLORS || inDatabase(db, refRed))
+				continue;
+			misses++;
+			SolveResult r = db.solve(refRed);
+			if (calls[0] != misses)
+				failure = p[0] + " wasn't passed to the fallback";
+			else if (r.getStatus() != p[2])
+				failure = p[0] + ": expected " + p[2] + ", got " + r.getStatus();
+			else if (r.isSolved() && invalid(r.getSolution(), refRed) != null)
+				failure = p[0] + ": " + invalid(r.getSolution(), refRed);
+			if (failure != null)
+				break;
+		}
+		if (failure == null && misses == 0)
+			failure = "every pattern was in the database, so none went to the fallback";
+		check("database misses", failure);
+		
+		Piece.PieceType[] fewer = Arrays.copyOf(Piece.PieceType.values(), Piece.PieceType.values().length - 1);
+		failure = "opened as a database for " + fewer.length + " pieces";
+		try
+		{
+			new TilingDatabase(new PlacementTable(fewer, false), file.getPath());
+		}
+		catch (IOException e)
+		{
+			failure = e.getMessage().contains("different set of pieces") ? null : "turned down with " + e.getMessage();
+		}
+		check("database header", failure);
+		
+		file.delete();
+		dir.delete();
+	}
+	
+	private static boolean inDatabase(TilingDatabase db, long pattern)
+	{
+		for (long n = 0; n < db.getNumRecords(); n++)
+			if (db.getPattern(n) == pattern)
+				return true;
+		return false;
+	}
+	
+	// a Solver without propagation on the inverted checkerboard takes 59M steps, long enough to stop partway through;
+	// one worker thread, so a cancelled search that kept running would hold up the next solve
+	private void async() throws InterruptedException, ExecutionException
+	{
+		final long refRed = pattern("inverted");
+		ExecutorService pool = Executors.newSingleThreadExecutor();
+		AsyncSolver async = new AsyncSolver(pool, new Supplier<SolverEngine>()
+		{
+			public SolverEngine get()
+			{
+				Solver s = new Solver();
+				s.setPropagation(false);
+				return s;
+			}
+		});
+		
+		long start = System.nanoTime();
+		SolveResult full = async.solve(refRed, 0, 0).get();		// also warms up, so setup doesn't eat the deadline below
+		long fullMillis = (System.nanoTime() - start) / 1000000;
+		long budget = 100000;
+		int node = 0;								// the budget is checked entering a node, so it can go over by one node's candidates
+		for (Placement[] pls : PlacementTable.STANDARD.getMatching(refRed))
+			node = Math.max(node, pls.length);
+		SolveResult r = async.solve(refRed, 0, budget).get();
+		check("async step budget", r.getStatus() == SolveResult.Status.STEP_LIMIT && r.getSteps() >= budget
+				&& r.getSteps() <= budget + node ? null : "expected STEP_LIMIT at " + budget + "-" + (budget + node)
+				+ " steps, got " + r.getStatus() + " at " + r.getSteps());
+		
+		long deadline = Math.max(1, fullMillis / 8);
+		start = System.nanoTime();
+		r = async.solve(refRed, deadline, 0).get();
+		long millis = (System.nanoTime() - start) / 1000000;
+		check("async deadline", r.getStatus() == SolveResult.Status.TIMED_OUT && r.getSteps() > 0 && millis >= deadline
+				&& r.getSteps() < full.getSteps() ? null : "expected TIMED_OUT after " + deadline + " ms, got "
+				+ r.getStatus() + " after " + millis + " ms and " + r.getSteps() + " steps");
+		
+		CompletableFuture<SolveResult> cancelled = async.solve(refRed, 0, 0);
+		Thread.sleep(Math.max(1, fullMillis / 8));
+		start = System.nanoTime();
+		cancelled.cancel(true);
+		String failure = null;
+		try
+		{
+			async.solve(pattern("checkerboard"), 0, 0).get(fullMillis / 2, TimeUnit.MILLISECONDS);
+		}
+		catch (TimeoutException e)
+		{
+			failure = "the next solve waited " + (System.nanoTime() - start) / 1000000 + " ms for a cancelled one";
+		}
+		if (failure == null && !cancelled.isCancelled())
+			failure = "the future isn't cancelled";
+		check("async cancel", failure);
+		async.shutdown();
+	}
+	
+	// each value alone under a far bigger one, so the percentile is its bucket's bound and not the max; then a spread of
+	// values against their exact percentiles
+	private void histogram()
+	{
+		String failure = null;
+		long[] values = {0, 1, 7, 8, 9, 15, 16, 17, 1000, 1 << 20, (1L << 40) + 1, Long.MAX_VALUE / 3, (1L << 62) - 1};
+		for (long v : values)
+		{
+			LatencyHistogram h = new LatencyHistogram();
+			h.record(v);
+			h.record(Long.MAX_VALUE);
+			long p = h.percentile(0.5);
+			if (p < v || p > v + v / 8)
+				failure = "the median of " + v + " and the max is " + p;
+			else if (h.percentile(1) != Long.MAX_VALUE)
+				failure = "the top percentile of " + v + " and the max is " + h.percentile(1);
+		}
+		check("histogram buckets", failure);
+		
+		failure = null;
+		LatencyHistogram h = new LatencyHistogram();
+		SplittableRandom random = new SplittableRandom(1);
+		long[] sorted = new long[10000];
+		for (int n = 0; n < sorted.length; n++)
+		{
+			sorted[n] = (long)Math.exp(random.nextDouble() * 25);		// 1 ns to about 70 s, spread over every power of 2
+			h.record(sorted[n]);
+		}
+		Arrays.sort(sorted);
+		double[] ps = {0.001, 0.1, 0.5, 0.9, 0.99, 0.999, 1};
+		for (double p : ps)
+		{
+			long exact = sorted[(int)Math.ceil(p * sorted.length) - 1];
+			long estimate = h.percentile(p);
+			if (estimate < exact || estimate > exact + exact / 8 || estimate > h.getMax())
+				failure = "p" + p + " is " + estimate + ", exactly " + exact + " (max " + h.getMax() + ")";
+		}
+		check("histogram percentiles", failure);
+	}
+	
+	// a server on a free port with one search slot; the slot is taken from its semaphore for the 503
+	private void server() throws Exception
+	{
+		SolveServer server = new SolveServer(new InetSocketAddress("localhost", 0), 1, "dlx", null, new SolutionCache(16));
+		server.start();
+		String base = "http://localhost:" + server.getPort() + "/solve?pattern=";
+		try
+		{
+			String[] reply = get(base + PATTERNS[0][1]);
+			check("server solved", reply[0].equals("200") && reply[1].contains("\"status\":\"SOLVED\"")
+					&& reply[1].contains("\"cached\":false") && reply[1].contains("\"pieces\"") ? null : reply[0] + " " + reply[1]);
+			long inverted = ~Bitboard.parsePattern((String)PATTERNS[0][1]);		// the same pattern with the colors swapped
+			reply = get(base + Bitboard.toPattern(inverted));
+			check("server cached", reply[0].equals("200") && reply[1].contains("\"status\":\"SOLVED\"")
+					&& reply[1].contains("\"cached\":true") ? null : reply[0] + " " + reply[1]);
+			reply = get(base + PATTERNS[6][1]);
+			check("server uneven", reply[0].equals("200") && reply[1].contains("\"status\":\"UNEVEN_COLORS\"") ? null
+					: reply[0] + " " + reply[1]);
+			reply = get(base + "rbx");
+			check("server bad pattern", reply[0].equals("400") && reply[1].contains("\"error\"") ? null : reply[0] + " " + reply[1]);
+			reply = get(base + PATTERNS[2][1] + "&timeout=soon");
+			check("server bad timeout", reply[0].equals("400") ? null : reply[0] + " " + reply[1]);
+			
+			java.lang.reflect.Field field = SolveServer.class.getDeclaredField("solving");
+			field.setAccessible(true);
+			Semaphore solving = (Semaphore)field.get(server);
+			solving.acquire();
+			try
+			{
+				long start = System.nanoTime();
+				reply = get(base + PATTERNS[2][1] + "&timeout=100");
+				long millis = (System.nanoTime() - start) / 1000000;
+				check("server busy", reply[0].equals("503") && reply[1].contains("\"status\":\"TIMED_OUT\"") && millis >= 100
+						? null : reply[0] + " after " + millis + " ms: " + reply[1]);
+			}
+			finally
+			{
+				solving.release();
+			}
+		}
+		finally
+		{
+			server.stop(0);
+		}
+	}
+	
+	// {status code, body}
+	private static String[] get(String url) throws IOException
+	{
+		HttpURLConnection c = (HttpURLConnection)new URL(url).openConnection();
+		int code = c.getResponseCode();
+		InputStream in = code < 400 ? c.getInputStream() : c.getErrorStream();
+		String body = in == null ? "" : new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		c.disconnect();
+		return new String[] {Integer.toString(code), body};
+	}
+}
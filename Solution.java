@@ -0,0 +1,73 @@
+import java.util.Arrays;
+
+// a complete tiling: one placement per piece, indexed like the PlacementTable it came from
+public final class Solution
+{
+	public static final byte NO_PIECE = -1;
+	
+	private final Placement[] placements;
+	private final byte[] owners;		// per cell (see Bitboard.index), the piece covering it, so lookups don't search the placements
+	
+	public Solution(Placement[] placements)
+	{
+		this.placements = placements.clone();
+		this.owners = new byte[Bitboard.SIZE * Bitboard.SIZE];
+		Arrays.fill(owners, NO_PIECE);
+		for (Placement pl : placements)
+			for (long cells = pl.getCells(); cells != 0; cells &= cells - 1)
+				owners[Long.numberOfTrailingZeros(cells)] = (byte)pl.getPiece();
+	}
+	
+	public int getNumPieces()
+	{
+		return placements.length;
+	}
+	
+	public Placement getPlacement(int piece)
+	{
+		return placements[piece];
+	}
+	
+	public Placement[] getPlacements()
+	{
+		return placements.clone();
+	}
+	
+	// the piece covering a cell, or NO_PIECE
+	public int getOwner(int row, int col)
+	{
+		return owners[Bitboard.index(row, col)];
+	}
+	
+	public int getOwner(int cell)
+	{
+		return owners[cell];
+	}
+	
+	// a copy of the whole ownership grid, indexed by Bitboard.index
+	public byte[] getOwners()
+	{
+		return owners.clone();
+	}
+	
+	// bitboard of the red cells of the pattern this solution produces
+	public long getRedCells()
+	{
+		long red = 0;
+		for (Placement pl : placements)
+			red |= pl.getRedCells();
+		return red;
+	}
+	
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		for (Placement pl : placements)
+		{
+			if (sb.length() > 0)
+				sb.append(' ');
+			sb.append(pl);
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,196 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// remembers results by pattern, treating patterns that are rotations, reflections or red/black swaps of each other as one
+// each pattern is reduced to a canonical form (the smallest of its 16 images), the canonical pattern's result is stored,
+// and solutions are mapped back onto the orientation that was asked for
+// the piece set has a mirror and a color-swapped partner for every piece, so a transformed solution is still a solution
+// least recently used entries are evicted past the capacity
+public class SolutionCache
+{
+	private final PlacementTable table;
+	private final int capacity;
+	private final LinkedHashMap<Long, Entry> entries;
+	private long hits, misses, evictions;
+	
+	// a result in the canonical orientation; solution is null unless status == SOLVED
+	private static class Entry
+	{
+		final SolveResult.Status status;
+		final Solution solution;
+		
+		Entry(SolveResult.Status status, Solution solution)
+		{
+			this.status = status;
+			this.solution = solution;
+		}
+	}
+	
+	public SolutionCache(int capacity)
+	{
+		this(PlacementTable.STANDARD, capacity);
+	}
+	
+	public SolutionCache(PlacementTable table, int capacity)
+	{
+		this.table = table;
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true)	// access order, for LRU
+		{
+			protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest)
+			{
+				if (size() <= SolutionCache.this.capacity)
+					return false;
+				evictions++;
+				return true;
+			}
+		};
+	}
+	
+	// solves through the cache: a hit costs no search steps, a miss is solved by engine and stored
+	public SolveResult solve(long refRed, SolverEngine engine)
+	{
+		SolveResult r = lookup(refRed);
+		if (r == null)
+		{
+			r = engine.solve(refRed);
+			store(refRed, r);
+		}
+		return r;
+	}
+	
+	// the stored result for refRed or any of its symmetric images, in refRed's orientation; null on a miss
+	public SolveResult lookup(long refRed)
+	{
+		long start = System.nanoTime();
+		int form = canonicalForm(refRed);
+		Entry e;
+		synchronized (this)
+		{
+			e = entries.get(transform(refRed, form));
+		}
+		Solution s = null;
+		if (e != null && e.solution != null)
+			s = inverseTransform(e.solution, form);			// null can't happen with a piece set closed under symmetry
+		synchronized (this)									// counted once the caller's answer is known
+		{
+			if (e == null || (e.solution != null && s == null))
+			{
+				misses++;
+				return null;
+			}
+			hits++;
+		}
+		return new SolveResult(e.status, s, 0, System.nanoTime() - start);
+	}
+	
+	// remembers a finished result; searches that were cancelled or stopped by a limit aren't stored
+	public void store(long refRed, SolveResult r)
+	{
+		if (!r.isComplete())
+			return;
+		int form = canonicalForm(refRed);
+		Solution s = r.isSolved() ? transform(r.getSolution(), form) : null;
+		if (r.isSolved() && s == null)
+			return;
+		Entry e = new Entry(r.getStatus(), s);
+		synchronized (this)
+		{
+			entries.put(transform(refRed, form), e);
+		}
+	}
+	
+	public synchronized int size()
+	{
+		return entries.size();
+	}
+	
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+	
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+	
+	public synchronized long getEvictions()
+	{
+		return evictions;
+	}
+	
+	public synchronized double getHitRate()
+	{
+		long total = hits + misses;
+		return total == 0 ? 0 : (double)hits / total;
+	}
+	
+	public String toString()
+	{
+		return "size=" + size() + " hits=" + getHits() + " misses=" + getMisses()
+				+ " evictions=" + getEvictions() + " hitRate=" + String.format("%.3f", getHitRate());
+	}
+	
+	// forms 0-15: bits 0-2 pick a Bitboard symmetry, bit 3 swaps red and black
+	// returns the form that maps refRed to its canonical (smallest) image
+	private static int canonicalForm(long refRed)
+	{
+		int best = 0;
+		long bestKey = refRed;
+		for (int form = 1; form < 2 * Bitboard.NUM_SYMMETRIES; form++)
+		{
+			long key = transform(refRed, form);
+			if (key < bestKey)
+			{
+				best = form;
+				bestKey = key;
+			}
+		}
+		return best;
+	}
+	
+	private static long transform(long refRed, int form)
+	{
+		long t = Bitboard.transform(refRed, form & 7);
+		return (form & 8) != 0 ? ~t : t;
+	}
+	
+	// the image of a solution under form, or null if some piece has no matching image in the table
+	private Solution transform(Solution s, int form)
+	{
+		Placement[] mapped = new Placement[s.getNumPieces()];
+		for (Placement pl : s.getPlacements())
+		{
+			long cells = Bitboard.transform(pl.getCells(), form & 7);
+			long red = Bitboard.transform(pl.getRedCells(), form & 7);
+			if (!put(mapped, cells, (form & 8) != 0 ? cells & ~red : red))
+				return null;
+		}
+		return new Solution(mapped);
+	}
+	
+	// undoes transform(s, form)
+	private Solution inverseTransform(Solution s, int form)
+	{
+		Placement[] mapped = new Placement[s.getNumPieces()];
+		for (Placement pl : s.getPlacements())
+		{
+			long cells = Bitboard.inverseTransform(pl.getCells(), form & 7);
+			long red = Bitboard.inverseTransform(pl.getRedCells(), form & 7);
+			if (!put(mapped, cells, (form & 8) != 0 ? cells & ~red : red))
+				return null;
+		}
+		return new Solution(mapped);
+	}
+	
+	// files the table's placement for these cells under its piece; false if there is none or the piece is taken
+	private boolean put(Placement[] mapped, long cells, long red)
+	{
+		Placement pl = table.find(cells, red);
+		if (pl == null || mapped[pl.getPiece()] != null)
+			return false;
+		mapped[pl.getPiece()] = pl;
+		return true;
+	}
+}
@@ -0,0 +1,510 @@
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// finds every tiling that matches a reference pattern with Solver's piece-first search: constraint propagation (see
+// Propagator) adds the forced placements and drops dead ends, and each level branches on the most constrained piece,
+// or on the most constrained cell if fewer placements cover it
+// branching on one piece's placements, or on the placements over one cell, splits the solutions, and forcing only adds
+// what they all share, so each tiling is found exactly once; the order is fixed for a pattern, so a resumed walk
+// carries on the same sequence
+// solutions come out lazily from an iterator/stream, and count() tallies them without building any (so does a
+// SolutionIterator's countRest(), which can be checkpointed)
+// an iterator's position can be saved with checkpoint() and picked up later, even in another process, with resume():
+//		"KENC", version, reference, number of pieces, levels (int, int, long, int, int)
+//		per piece, the index of the next candidate at that level (int); steps, solutions found (long, long);
+//		whether a solution was found but not yet returned, whether the walk is over, whether the newest placement
+//		still has to be searched below (boolean, boolean, boolean)
+// the placements on the board aren't stored: the search is deterministic, so replaying the levels, each with the
+// candidate just before its next one, rebuilds the board, the forced placements and the propagation state
+//
+// usage: java SolutionEnumerator [-checkpoint file] [-every seconds] <pattern>
+//		counts the solutions of a pattern, saving the position to the checkpoint file every so often and on shutdown;
+//		run it again with the same file to carry on where it stopped
+public class SolutionEnumerator implements Iterable<Solution>
+{
+	public static final int MAGIC = 0x4b454e43;		// "KENC"
+	public static final int VERSION = 3;
+	
+	private final long refRed;
+	private final Placement[][] placements;		// per piece, every placement matching the reference; null if unsolvable
+	private long countSteps;
+	
+	public SolutionEnumerator(long refRed)
+	{
+		this(PlacementTable.STANDARD, refRed);
+	}
+	
+	public SolutionEnumerator(PlacementTable table, long refRed)
+	{
+		this.refRed = refRed;
+		if (Long.bitCount(refRed) == table.getNumRed())
+			this.placements = table.getMatching(refRed);
+		else
+			this.placements = null;
+	}
+	
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		File checkpoint = null;
+		long every = 60;
+		String pattern = null;
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-checkpoint"))
+				checkpoint = new File(args[++i]);
+			else if (args[i].equals("-every"))
+				every = Long.parseLong(args[++i]);
+			else
+				pattern = args[i];
+		}
+		if (pattern == null)
+		{
+			System.err.println("usage: java SolutionEnumerator [-checkpoint file] [-every seconds] <pattern>");
+			System.exit(2);
+		}
+		SolutionEnumerator e = new SolutionEnumerator(Bitboard.parsePattern(pattern));
+		final SolutionIterator it;
+		if (checkpoint != null && checkpoint.exists())
+		{
+			it = e.resume(checkpoint);
+			System.err.println("resuming after " + it.getFound() + " solutions, " + it.getSteps() + " steps");
+		}
+		else
+			it = e.iterator();
+		
+		final AtomicBoolean stopping = new AtomicBoolean();
+		final CountDownLatch saved = new CountDownLatch(1);
+		if (checkpoint != null)
+		{
+			Timer timer = new Timer(true);
+			timer.scheduleAtFixedRate(new TimerTask()
+			{
+				public void run()
+				{
+					it.pause();
+				}
+			}, every * 1000, every * 1000);
+			Runtime.getRuntime().addShutdownHook(new Thread()		// e.g. the node is being taken away: save before exiting
+			{
+				public void run()
+				{
+					stopping.set(true);
+					it.pause();
+					try
+					{
+						saved.await(10, TimeUnit.SECONDS);
+					}
+					catch (InterruptedException ex)
+					{
+					}
+				}
+			});
+		}
+		while (true)
+		{
+			it.countRest();
+			if (checkpoint != null)
+				it.checkpoint(checkpoint);
+			if (it.isDone() || stopping.get())
+				break;
+			System.err.println(it.getFound() + " solutions, " + it.getSteps() + " steps so far");
+		}
+		saved.countDown();
+		System.out.println(it.getFound() + " solutions, " + it.getSteps() + " steps" + (it.isDone() ? "" : " (stopped)"));
+	}
+	
+	// a new, independent walk over the solutions; each next() resumes the search where the last one stopped
+	public SolutionIterator iterator()
+	{
+		return new SolutionIterator();
+	}
+	
+	// a walk that starts where the one saved in file (see SolutionIterator.checkpoint) stopped
+	// throws IOException if the file is unreadable or was saved for another pattern
+	public SolutionIterator resume(File file) throws IOException
+	{
+		DataInputStream in = new DataInputStream(new FileInputStream(file));
+		try
+		{
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				throw new IOException(file + " is not a checkpoint");
+			if (in.readLong() != refRed)
+				throw new IOException(file + " is a checkpoint for a different pattern");
+			SolutionIterator it = new SolutionIterator();
+			if (in.readInt() != it.path.length)
+				throw new IOException(file + " is a checkpoint for a different set of pieces");
+			int depth = in.readInt();
+			if (depth < 0 || depth > it.path.length)
+				throw new IOException(file + " is corrupt");
+			int[] next = new int[it.path.length];
+			for (int d = 0; d < next.length; d++)
+				next[d] = in.readInt();
+			long steps = in.readLong();
+			long found = in.readLong();
+			boolean hasPending = in.readBoolean();
+			boolean done = in.readBoolean();
+			boolean descend = in.readBoolean();
+			if (!it.restore(depth, next, steps, found, hasPending, done, descend))
+				throw new IOException(file + " is corrupt");
+			return it;
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+	
+	public Stream<Solution> stream()
+	{
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(),
+				Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+	}
+	
+	// stops searching after the first limit solutions
+	public Stream<Solution> stream(long limit)
+	{
+		return stream().limit(limit);
+	}
+	
+	// number of solutions, stopping at limit; no Solution objects are made
+	public long count(long limit)
+	{
+		SolutionIterator it = iterator();
+		long n = it.countRest(limit);
+		countSteps = it.getSteps();
+		return n;
+	}
+	
+	public long count()
+	{
+		return count(Long.MAX_VALUE);
+	}
+	
+	// steps taken by the last call to count: candidates tried plus placements forced, as Solver counts them
+	public long getCountSteps()
+	{
+		return countSteps;
+	}
+	
+	// Solver's piece-first search with an explicit stack of levels, so it can stop after each solution and pick up again
+	// a level branches on one piece or one cell; its placement, with whatever propagation forced after it, is undone
+	// as a unit
+	public class SolutionIterator implements Iterator<Solution>
+	{
+		private final Placement[] path;		// per piece, its placement on the board, or null
+		private final Propagator propagator;
+		private final Placement[][] candidates;	// per level, the possible placements of its piece or over its cell
+		private final int[] numCandidates;
+		private final int[] next;			// per level, index into candidates of the next one to try
+		private final boolean[] placed;		// per level, whether candidates[next - 1] is on the board
+		private final boolean[] propagated;	// and whether its propagation succeeded (so has a Propagator level and forced placements)
+		private final Placement[] forced;	// forced placements on the board, oldest first
+		private final int[] forcedMark;		// per level, where its forced placements start
+		private int numForced;
+		private int depth;					// number of levels open
+		private boolean descend;			// the board has just been propagated: open a level below it (or report it, if full)
+		private long occupied, usedPieces;
+		private long steps;
+		private long found;					// solutions found, including pending
+		private Solution pending;			// found by hasNext but not yet returned
+		private boolean done;
+		private volatile boolean pauseRequested;
+		private boolean paused;				// the last countRest stopped for a pause
+		
+		private SolutionIterator()
+		{
+			int numPieces = placements == null ? 0 : placements.length;
+			this.path = new Placement[numPieces];
+			this.propagator = new Propagator(numPieces);
+			int most = 0;
+			for (int p = 0; p < numPieces; p++)
+				most = Math.max(most, placements[p].length);
+			this.candidates = new Placement[numPieces][most];
+			this.numCandidates = new int[numPieces];
+			this.next = new int[numPieces];
+			this.placed = new boolean[numPieces];
+			this.propagated = new boolean[numPieces];
+			this.forced = new Placement[numPieces];
+			this.forcedMark = new int[numPieces];
+			this.done = (placements == null);
+			if (!done)
+				start();
+		}
+		
+		// the root: propagation on the empty board, whose forced placements stay for the whole walk
+		private void start()
+		{
+			propagator.reset(placements);
+			if (!propagator.propagate(0, 0))
+			{
+				done = true;
+				return;
+			}
+			addForced();
+			descend = true;
+		}
+		
+		// false only once the walk is over; a pause doesn't stop it (see pause)
+		public boolean hasNext()
+		{
+			if (pending == null && !done)
+				pending = findNext();
+			return pending != null;
+		}
+		
+		public Solution next()
+		{
+			if (!hasNext())
+				throw new NoSuchElementException();
+			Solution s = pending;
+			pending = null;
+			return s;
+		}
+		
+		public long getSteps()
+		{
+			return steps;
+		}
+		
+		// every solution has been found
+		public boolean isDone()
+		{
+			return done && pending == null;
+		}
+		
+		// may be called from any thread: makes the running (or next) countRest return after at most one more step,
+		// without ending the walk, so it can be checkpointed; isPaused() then says so, and countRest carries on
+		// hasNext and next don't pause, since a false hasNext has to mean there are no more solutions; a pause asked
+		// for while they search waits for the next countRest
+		public void pause()
+		{
+			pauseRequested = true;
+		}
+		
+		// the last countRest stopped because of pause(), not at the end of the walk or its limit
+		public boolean isPaused()
+		{
+			return paused;
+		}
+		
+		// counts the solutions left (including one hasNext found) as if next were called for each, without making them;
+		// returns how many it counted, having stopped at the end or when paused
+		public long countRest()
+		{
+			return countRest(Long.MAX_VALUE);
+		}
+		
+		// the same, stopping once it has counted limit
+		public long countRest(long limit)
+		{
+			paused = false;
+			long n = 0;
+			if (pending != null && limit > 0)
+			{
+				pending = null;
+				n++;
+			}
+			while (n < limit && !done && advance(true))
+			{
+				found++;
+				n++;
+			}
+			return n;
+		}
+		
+		// solutions returned by next (or counted by countRest) so far
+		public long getFound()
+		{
+			return pending == null ? found : found - 1;
+		}
+		
+		// saves the position of the walk to file (see SolutionEnumerator.resume)
+		// it is written to a temporary file first and renamed over file, so a crash leaves either the old or the new one
+		public void checkpoint(File file) throws IOException
+		{
+			File tmp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+			FileOutputStream fos = new FileOutputStream(tmp);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+			try
+			{
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(refRed);
+				out.writeInt(path.length);
+				out.writeInt(depth);
+				for (int n : next)
+					out.writeInt(n);
+				out.writeLong(steps);
+				out.writeLong(found);
+				out.writeBoolean(pending != null);
+				out.writeBoolean(done);
+				out.writeBoolean(descend);
+				out.flush();
+				fos.getFD().sync();				// on disk before it replaces the old checkpoint
+			}
+			finally
+			{
+				out.close();
+			}
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		
+		// replays the levels a checkpoint describes: each one opened as the search would, with the candidate before
+		// next[level] placed and propagated again (its steps aren't counted twice); false if they don't fit the pattern
+		private boolean restore(int depth, int[] next, long steps, long found, boolean hasPending, boolean done, boolean descend)
+		{
+			if (this.done)
+				return depth == 0;
+			for (int d = 0; d < depth; d++)
+			{
+				openLevel();
+				if (next[d] < (d < depth - 1 ? 1 : 0) || next[d] > numCandidates[d])
+					return false;				// every level but the newest has a placement on the board
+				this.next[d] = next[d];
+				if (next[d] > 0 && !place(candidates[d][next[d] - 1]) && d < depth - 1)
+					return false;				// only the newest placement can have been a dead end
+			}
+			this.steps = steps;
+			this.found = found;
+			this.done |= done;
+			this.descend = descend;
+			if (hasPending)
+			{
+				if (usedPieces != (1L << path.length) - 1)
+					return false;
+				this.pending = new Solution(path);
+			}
+			return true;
+		}
+		
+		private Solution findNext()
+		{
+			if (!advance(false))
+				return null;
+			found++;
+			return new Solution(path);
+		}
+		
+		// searches on until all the pieces are placed (true, with the board left as it is until the next call)
+		// or the walk ends or, if pausable, is paused (false)
+		private boolean advance(boolean pausable)
+		{
+			while (true)
+			{
+				if (pausable && pauseRequested)
+				{
+					pauseRequested = false;
+					paused = true;
+					return false;
+				}
+				if (descend)
+				{
+					descend = false;
+					if (usedPieces == (1L << path.length) - 1)
+						return true;
+					openLevel();
+					continue;
+				}
+				if (depth == 0)								// the root's level is used up
+				{
+					done = true;
+					return false;
+				}
+				int d = depth - 1;
+				unplace(d);
+				if (next[d] == numCandidates[d])			// no candidates left at this level: back up
+				{
+					depth--;
+					continue;
+				}
+				steps++;
+				descend = place(candidates[d][next[d]++]);
+			}
+		}
+		
+		// a new level below the board, for the piece with the fewest placements left, or the cell if fewer cover it
+		// (so a level never has more candidates than a piece has placements)
+		private void openLevel()
+		{
+			int d = depth++;
+			int piece = propagator.getMostConstrained(usedPieces);
+			int cell = propagator.getMostConstrainedCell(propagator.getNumPossible(piece));
+			if (cell >= 0)
+				numCandidates[d] = propagator.getCovering(cell, candidates[d]);
+			else
+				numCandidates[d] = propagator.getPossible(piece, candidates[d]);
+			next[d] = 0;
+			placed[d] = false;
+			propagated[d] = false;
+		}
+		
+		// puts pl on the board at the newest level and propagates; true if the board can still be completed
+		private boolean place(Placement pl)
+		{
+			int d = depth - 1;
+			occupied |= pl.getCells();
+			usedPieces |= 1L << pl.getPiece();
+			path[pl.getPiece()] = pl;
+			placed[d] = true;
+			forcedMark[d] = numForced;
+			propagated[d] = Solver.checkHeuristics(occupied) && propagator.propagate(occupied, usedPieces);
+			if (propagated[d])
+				addForced();
+			return propagated[d];
+		}
+		
+		// takes level d's placement back off, with the placements forced after it
+		private void unplace(int d)
+		{
+			if (!placed[d])
+				return;
+			if (propagated[d])
+			{
+				propagator.pop();
+				while (numForced > forcedMark[d])
+					remove(forced[--numForced]);
+			}
+			remove(candidates[d][next[d] - 1]);
+			placed[d] = false;
+			propagated[d] = false;
+		}
+		
+		private void addForced()
+		{
+			for (int k = 0; k < propagator.getNumForced(); k++)
+			{
+				Placement pl = propagator.getForced(k);
+				steps++;
+				occupied |= pl.getCells();
+				usedPieces |= 1L << pl.getPiece();
+				path[pl.getPiece()] = pl;
+				forced[numForced++] = pl;
+			}
+		}
+		
+		private void remove(Placement pl)
+		{
+			occupied &= ~pl.getCells();
+			usedPieces &= ~(1L << pl.getPiece());
+			path[pl.getPiece()] = null;
+		}
+	}
+}
@@ -0,0 +1,71 @@
+// what a Solver found for one reference pattern
+public final class SolveResult
+{
+	// TIMED_OUT and STEP_LIMIT: stopped by its SearchLimits before it could finish; steps and stats say how far it got
+	public enum Status
+	{
+		SOLVED, NO_SOLUTION, UNEVEN_COLORS, CANCELLED, TIMED_OUT, STEP_LIMIT;
+	}
+	
+	private final Status status;
+	private final Solution solution;	// null unless status == SOLVED
+	private final long steps;
+	private final long nanos;
+	private final SearchStats stats;
+	
+	public SolveResult(Status status, Solution solution, long steps, long nanos)
+	{
+		this(status, solution, steps, nanos, new SearchStats(0));
+	}
+	
+	public SolveResult(Status status, Solution solution, long steps, long nanos, SearchStats stats)
+	{
+		this.status = status;
+		this.solution = solution;
+		this.steps = steps;
+		this.nanos = nanos;
+		this.stats = stats;
+	}
+	
+	public Status getStatus()
+	{
+		return status;
+	}
+	
+	public boolean isSolved()
+	{
+		return status == Status.SOLVED;
+	}
+	
+	// the search ran to the end, so the answer holds for the pattern (it wasn't cancelled or stopped by a limit)
+	public boolean isComplete()
+	{
+		return status == Status.SOLVED || status == Status.NO_SOLUTION || status == Status.UNEVEN_COLORS;
+	}
+	
+	public Solution getSolution()
+	{
+		return solution;
+	}
+	
+	public long getSteps()
+	{
+		return steps;
+	}
+	
+	public long getNanos()
+	{
+		return nanos;
+	}
+	
+	// breakdown of the steps, see SearchStats
+	public SearchStats getStats()
+	{
+		return stats;
+	}
+	
+	public String toString()
+	{
+		return status + " steps=" + steps + " ms=" + String.format("%.3f", nanos / 1e6);
+	}
+}
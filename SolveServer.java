@@ -0,0 +1,447 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+// solves patterns over HTTP with the JDK's built-in server and answers in JSON
+//		POST /solve				body: a pattern (64 'r'/'b' characters, whitespace ignored)
+//		GET /solve?pattern=...	the same; either can add &timeout=<ms> and &max-steps=<n>, but not past the server's limits
+//		GET /stats				request counts, latency percentiles, the cache and the search counters
+// a solved pattern comes back with each piece's placement and its color in a four-coloring like a map (see ColorMap):
+//		{"status":"SOLVED","steps":802,"ms":0.61,"cached":false,"pieces":[{"type":"LINE_8","row":0,"col":0,"orientation":1,"color":2},...]}
+//
+// every request gets its own thread: a virtual thread where the JVM has them (Java 21 on), a pooled platform thread before
+// that, so a client waiting on a long search ties up no more than a blocked thread
+// searching is CPU-bound, so only as many searches as there are cores run at once (a semaphore, fair so they go in order);
+// the rest wait for a turn, up to their deadline, which starts when the request arrives
+// requests that need no search don't take a turn: malformed or uneven patterns are answered at once, and so are patterns
+// (or rotations, reflections or color swaps of them) in the SolutionCache, so they never queue behind long searches
+//
+// usage: java SolveServer [-port n] [-engine dfs|cells|dlx] [-db file] [-solvers n] [-cache entries]
+//		[-timeout ms] [-max-steps n]
+public class SolveServer
+{
+	public static final int MAX_BODY = 4096;		// bytes; a pattern is 64 characters plus whitespace
+	
+	private final HttpServer server;
+	private final ExecutorService requests;
+	private final boolean virtualThreads;
+	private final String engine;
+	private final String database;				// for the db engine
+	private final int solvers;
+	private final Semaphore solving;				// turns to search, one per core by default
+	private final ConcurrentLinkedQueue<SolverEngine> idle = new ConcurrentLinkedQueue<SolverEngine>();	// engines aren't thread-safe
+	private final Set<SolverEngine> running = ConcurrentHashMap.newKeySet();	// engines searching now, cancelled by stop
+	private volatile boolean stopping;
+	private final SolutionCache cache;				// null if caching is off
+	private long timeoutMillis = 10000;			// per request, from when it arrives; 0 = none
+	private long maxSteps;						// per request; 0 = none
+	private final LatencyHistogram latency = new LatencyHistogram();		// every request
+	private final LatencyHistogram searchLatency = new LatencyHistogram();	// requests that searched, waiting included
+	private final LatencyHistogram quickLatency = new LatencyHistogram();	// requests answered without a search
+	private final AtomicLong numRequests = new AtomicLong();
+	private final AtomicLong numSearched = new AtomicLong();
+	private final AtomicLong numCached = new AtomicLong();
+	private final AtomicLong numPrechecked = new AtomicLong();	// answered without a search or the cache
+	private final AtomicLong numBusy = new AtomicLong();		// deadline passed before a turn to search came up
+	private final AtomicLong numErrors = new AtomicLong();
+	
+	public SolveServer(InetSocketAddress address, int solvers, String engine, String database, SolutionCache cache) throws IOException
+	{
+		this.engine = engine;
+		this.database = database;
+		this.cache = cache;
+		this.solvers = solvers;
+		this.solving = new Semaphore(solvers, true);
+		ExecutorService virtual = virtualThreadExecutor();
+		this.virtualThreads = virtual != null;
+		this.requests = virtual != null ? virtual : Executors.newCachedThreadPool();
+		idle.add(makeEngine());					// fails here, not on the first request, if the engine or database is bad
+		this.server = HttpServer.create(address, 4096);		// connections waiting to be accepted
+		server.setExecutor(requests);
+		server.createContext("/solve", new HttpHandler()
+		{
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				handleSolve(exchange);
+			}
+		});
+		server.createContext("/stats", new HttpHandler()
+		{
+			public void handle(HttpExchange exchange) throws IOException
+			{
+				handleStats(exchange);
+			}
+		});
+	}
+	
+	public static void main(String[] args) throws IOException
+	{
+		int port = 8080;
+		int solvers = Runtime.getRuntime().availableProcessors();
+		String engine = "dlx";
+		String database = null;
+		int cacheSize = 100000;
+		long timeout = 10000;
+		long maxSteps = 0;
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-port"))
+				port = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-solvers"))
+				solvers = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-engine"))
+				engine = args[++i];
+			else if (args[i].equals("-db"))
+			{
+				database = args[++i];
+				engine = "db";
+			}
+			else if (args[i].equals("-cache"))
+				cacheSize = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-timeout"))
+				timeout = Long.parseLong(args[++i]);
+			else if (args[i].equals("-max-steps"))
+				maxSteps = Long.parseLong(args[++i]);
+			else
+				throw new IllegalArgumentException("unknown option: " + args[i]);
+		}
+		SolverStats.register();
+		SolveServer s = new SolveServer(new InetSocketAddress(port), solvers, engine, database,
+				cacheSize > 0 ? new SolutionCache(cacheSize) : null);
+		s.setLimits(timeout, maxSteps);
+		s.start();
+		System.err.println("listening on port " + s.getPort() + ", " + solvers + " solvers, "
+				+ (s.virtualThreads ? "virtual" : "platform") + " threads per request");
+	}
+	
+	// per request, the most a client can ask for; 0 for no limit
+	public void setLimits(long timeoutMillis, long maxSteps)
+	{
+		this.timeoutMillis = timeoutMillis;
+		this.maxSteps = maxSteps;
+	}
+	
+	public void start()
+	{
+		server.start();
+	}
+	
+	// stops accepting, cancels the searches under way (their requests get a CANCELLED answer if the client is still
+	// there), waits up to delaySeconds for the exchanges to finish, then stops the request threads
+	public void stop(int delaySeconds)
+	{
+		stopping = true;
+		for (SolverEngine e : running)
+			e.cancel();
+		server.stop(delaySeconds);
+		requests.shutdownNow();
+	}
+	
+	public int getPort()
+	{
+		return server.getAddress().getPort();
+	}
+	
+	public LatencyHistogram getLatency()
+	{
+		return latency;
+	}
+	
+	// Executors.newVirtualThreadPerTaskExecutor() if this JVM has it (looked up by name, so this builds on Java 17), else null
+	private static ExecutorService virtualThreadExecutor()
+	{
+		try
+		{
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			return null;
+		}
+	}
+	
+	private void handleSolve(HttpExchange exchange) throws IOException
+	{
+		long start = System.nanoTime();
+		numRequests.incrementAndGet();
+		boolean searched = false;
+		try
+		{
+			long refRed;
+			SearchLimits limits;
+			try											// a bad query, pattern or limit is the client's mistake: 400
+			{
+				HashMap<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+				String text;
+				if (exchange.getRequestMethod().equals("POST"))
+				{
+					InputStream body = exchange.getRequestBody();
+					byte[] bytes = body.readNBytes(MAX_BODY + 1);
+					if (bytes.length > MAX_BODY)
+					{
+						reply(exchange, 413, error("pattern too long"));
+						return;
+					}
+					text = new String(bytes, StandardCharsets.US_ASCII);
+				}
+				else if (exchange.getRequestMethod().equals("GET"))
+					text = query.containsKey("pattern") ? query.get("pattern") : "";
+				else
+				{
+					exchange.getResponseHeaders().set("Allow", "GET, POST");
+					reply(exchange, 405, error("use GET or POST"));
+					return;
+				}
+				refRed = Bitboard.parsePattern(text);
+				limits = limits(query, start);
+			}
+			catch (IllegalArgumentException e)
+			{
+				numPrechecked.incrementAndGet();
+				reply(exchange, 400, error(e.getMessage()));
+				return;
+			}
+			if (Long.bitCount(refRed) != PlacementTable.STANDARD.getNumRed())
+			{
+				numPrechecked.incrementAndGet();
+				reply(exchange, 200, toJson(new SolveResult(SolveResult.Status.UNEVEN_COLORS, null, 0, System.nanoTime() - start), false));
+				return;
+			}
+			SolveResult r = cache != null ? cache.lookup(refRed) : null;
+			if (r != null)
+			{
+				numCached.incrementAndGet();
+				reply(exchange, 200, toJson(r, true));
+				return;
+			}
+			
+			searched = true;
+			if (!solving.tryAcquire(Math.max(0, limits.getDeadline() - System.nanoTime()), TimeUnit.NANOSECONDS))
+			{
+				numBusy.incrementAndGet();
+				reply(exchange, 503, toJson(new SolveResult(SolveResult.Status.TIMED_OUT, null, 0, System.nanoTime() - start), false));
+				return;
+			}
+			try
+			{
+				SolverEngine e = idle.poll();
+				if (e == null)
+					e = makeEngine();
+				e.setLimits(limits);
+				running.add(e);
+				try
+				{
+					if (stopping)						// stop() may have gone through running before e was in it
+						e.cancel();
+					r = e.solve(refRed);
+				}
+				finally
+				{
+					running.remove(e);
+				}
+				if (!stopping)							// a cancelled engine stays cancelled
+					idle.add(e);
+			}
+			finally
+			{
+				solving.release();
+			}
+			numSearched.incrementAndGet();
+			if (cache != null)
+				cache.store(refRed, r);
+			reply(exchange, 200, toJson(r, false));
+		}
+		catch (RuntimeException | InterruptedException e)
+		{
+			numErrors.incrementAndGet();
+			reply(exchange, 500, error(String.valueOf(e)));
+		}
+		finally
+		{
+			long nanos = System.nanoTime() - start;
+			latency.record(nanos);
+			(searched ? searchLatency : quickLatency).record(nanos);
+		}
+	}
+	
+	// the server's limits, or the request's where they are tighter; the deadline counts from when the request arrived
+	private SearchLimits limits(HashMap<String, String> query, long arrived)
+	{
+		long timeout = tighter(timeoutMillis, query.get("timeout"));
+		long steps = tighter(maxSteps, query.get("max-steps"));
+		long deadline = timeout > 0 ? arrived + TimeUnit.MILLISECONDS.toNanos(timeout) : Long.MAX_VALUE;
+		return new SearchLimits(deadline, steps > 0 ? steps : Long.MAX_VALUE);
+	}
+	
+	private static long tighter(long limit, String asked)
+	{
+		if (asked == null)
+			return limit;
+		long n = Long.parseLong(asked.trim());
+		if (n <= 0)
+			return limit;
+		return limit > 0 ? Math.min(limit, n) : n;
+	}
+	
+	private void handleStats(HttpExchange exchange) throws IOException
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"requests\":").append(numRequests.get())
+			.append(",\"searched\":").append(numSearched.get())
+			.append(",\"cached\":").append(numCached.get())
+			.append(",\"prechecked\":").append(numPrechecked.get())
+			.append(",\"busy\":").append(numBusy.get())
+			.append(",\"errors\":").append(numErrors.get())
+			.append(",\"searching\":").append(solvers - solving.availablePermits())
+			.append(",\"waiting\":").append(solving.getQueueLength())
+			.append(",\"virtualThreads\":").append(virtualThreads)
+			.append(",\"latency\":");
+		appendLatency(sb, latency);
+		sb.append(",\"searchLatency\":");
+		appendLatency(sb, searchLatency);
+		sb.append(",\"quickLatency\":");
+		appendLatency(sb, quickLatency);
+		if (cache != null)
+			sb.append(",\"cache\":{\"size\":").append(cache.size())
+				.append(",\"hits\":").append(cache.getHits())
+				.append(",\"misses\":").append(cache.getMisses())
+				.append(",\"evictions\":").append(cache.getEvictions()).append('}');
+		SolverStats st = SolverStats.GLOBAL;
+		sb.append(",\"search\":{\"searches\":").append(st.getSearches())
+			.append(",\"solved\":").append(st.getSolved())
+			.append(",\"noSolution\":").append(st.getNoSolution())
+			.append(",\"timedOut\":").append(st.getTimedOut())
+			.append(",\"stepLimited\":").append(st.getStepLimited())
+			.append(",\"nodesPerSecond\":").append(String.format("%.0f", st.getNodesPerSecond())).append("}}");
+		reply(exchange, 200, sb.toString());
+	}
+	
+	private static void appendLatency(StringBuilder sb, LatencyHistogram h)
+	{
+		sb.append("{\"count\":").append(h.getCount())
+			.append(",\"p50\":").append(millis(h.percentile(0.5)))
+			.append(",\"p90\":").append(millis(h.percentile(0.9)))
+			.append(",\"p99\":").append(millis(h.percentile(0.99)))
+			.append(",\"p999\":").append(millis(h.percentile(0.999)))
+			.append(",\"max\":").append(millis(h.getMax())).append('}');
+	}
+	
+	private static String millis(long nanos)
+	{
+		return String.format("%.3f", nanos / 1e6);
+	}
+	
+	private String toJson(SolveResult r, boolean cached)
+	{
+		StringBuilder sb = new StringBuilder();
+		sb.append("{\"status\":\"").append(r.getStatus())
+			.append("\",\"steps\":").append(r.getSteps())
+			.append(",\"ms\":").append(millis(r.getNanos()))
+			.append(",\"cached\":").append(cached);
+		if (r.isSolved())
+		{
+			Solution sol = r.getSolution();
+			ColorMap map = new ColorMap(sol);
+			boolean colored = map.color(4);
+			sb.append(",\"pieces\":[");
+			for (Placement pl : sol.getPlacements())
+			{
+				if (pl.getPiece() > 0)
+					sb.append(',');
+				sb.append("{\"type\":\"").append(PlacementTable.STANDARD.getType(pl.getPiece()))
+					.append("\",\"row\":").append(pl.getRow())
+					.append(",\"col\":").append(pl.getCol())
+					.append(",\"orientation\":").append(pl.getOrientation());
+				if (colored)
+					sb.append(",\"color\":").append(map.getColor(pl.getPiece()) + 1);
+				sb.append('}');
+			}
+			sb.append(']');
+		}
+		return sb.append('}').toString();
+	}
+	
+	// message as a JSON string: quotes, backslashes and control characters escaped
+	private static String error(String message)
+	{
+		StringBuilder sb = new StringBuilder("{\"error\":\"");
+		for (int k = 0; k < message.length(); k++)
+		{
+			char c = message.charAt(k);
+			if (c == '"' || c == '\\')
+				sb.append('\\').append(c);
+			else if (c < 0x20)
+				sb.append(String.format("\\u%04x", (int)c));
+			else
+				sb.append(c);
+		}
+		return sb.append("\"}").toString();
+	}
+	
+	private static void reply(HttpExchange exchange, int code, String json) throws IOException
+	{
+		byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(code, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.close();
+	}
+	
+	// name=value pairs of a URL query, decoded
+	private static HashMap<String, String> parseQuery(String raw) throws UnsupportedEncodingException
+	{
+		HashMap<String, String> query = new HashMap<String, String>();
+		if (raw == null)
+			return query;
+		for (String pair : raw.split("&"))
+		{
+			int eq = pair.indexOf('=');
+			if (eq > 0)
+				query.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+		}
+		return query;
+	}
+	
+	private SolverEngine makeEngine()
+	{
+		if (engine.equals("dfs") || engine.equals("cells"))
+		{
+			Solver s = new Solver();
+			if (engine.equals("cells"))
+				s.setStrategy(Solver.Strategy.CELL_FIRST);
+			return s;
+		}
+		if (engine.equals("dlx"))
+			return new DancingLinksSolver();
+		if (engine.equals("db"))
+		{
+			try
+			{
+				return new TilingDatabase(database);
+			}
+			catch (IOException e)
+			{
+				throw new IllegalArgumentException(e.getMessage());
+			}
+		}
+		throw new IllegalArgumentException("unknown engine: " + engine);
+	}
+}
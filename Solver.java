@@ -0,0 +1,390 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// depth-first search that places pieces to fit the board and match the colors of a reference pattern
+// has no drawing code; a SolverListener can follow its progress
+public class Solver implements SolverEngine
+{
+	// PIECE_FIRST: place the piece with the fewest placements that still fit anywhere it fits, or fill the cell with the
+	//		fewest if that's fewer, then choose again, etc.
+	// CELL_FIRST: cover the first empty cell with any remaining piece that fits there, then the next empty cell, etc.
+	public enum Strategy
+	{
+		PIECE_FIRST, CELL_FIRST;
+	}
+	
+	private final PlacementTable table;
+	private Strategy strategy = Strategy.PIECE_FIRST;
+	private boolean regionPruning = false;
+	private boolean propagation = true;
+	private SolverListener listener;
+	private final AtomicBoolean cancelled;	// may be shared with other solvers working on the same pattern
+	private SearchLimits limits = SearchLimits.NONE;	// may also be shared
+	
+	// per-solve state
+	private Placement[][] placements;		// per piece, every placement matching the reference
+	private Placement[][] byFirstCell;		// per cell, every placement matching the reference whose lowest cell it is
+	private Placement[] path;				// current placement of each piece, null if not placed
+	private long occupied;					// bitboard of covered cells
+	private long usedPieces;				// bitmask of placed pieces
+	private RegionPruner pruner;
+	private Propagator propagator;
+	private Placement[] forced;				// placements forced by propagation, in the order they were added
+	private Placement[][] possible;			// per piece, room for its placements propagation still allows (piece-first)
+	private Placement[][] covering;			// per cell, room for the placements propagation still allows over it (piece-first)
+	private int numForced;
+	private SearchStats stats;
+	private long steps;
+	private long nextCheck;					// steps at which to look at cancel and the limits again
+	private long charged;					// steps already charged to the limits
+	private SolveResult.Status stopped;		// why the search gave up early (CANCELLED, TIMED_OUT or STEP_LIMIT), or null
+	private boolean solved;
+	
+	public Solver()
+	{
+		this(PlacementTable.STANDARD);
+	}
+	
+	public Solver(PlacementTable table)
+	{
+		this(table, new AtomicBoolean());
+	}
+	
+	public Solver(PlacementTable table, AtomicBoolean cancelled)
+	{
+		this.table = table;
+		this.cancelled = cancelled;
+	}
+	
+	public void setListener(SolverListener l)
+	{
+		this.listener = l;
+	}
+	
+	public void setStrategy(Strategy s)
+	{
+		this.strategy = s;
+	}
+	
+	// also reject boards with an empty region the remaining pieces can't fill, see RegionPruner
+	// cuts steps by about a quarter on hard cell-first searches, but each check costs more than the steps it saves
+	// on most patterns, so it is off unless asked for
+	public void setRegionPruning(boolean on)
+	{
+		this.regionPruning = on;
+	}
+	
+	// before searching and at every node, add the placements the board forces and reject boards with a cell or piece
+	// that nothing fits any more, see Propagator
+	public void setPropagation(boolean on)
+	{
+		this.propagation = on;
+	}
+	
+	// stops a running solve within SearchLimits.CHECK_INTERVAL steps; the solver stays cancelled, so make a new one
+	// for the next pattern
+	public void cancel()
+	{
+		this.cancelled.set(true);
+	}
+	
+	// deadline and/or step budget; they count steps, so give each solve its own
+	public void setLimits(SearchLimits limits)
+	{
+		this.limits = limits;
+	}
+	
+	// refRed = bitboard of red cells of the reference pattern
+	public SolveResult solve(long refRed)
+	{
+		long start = System.nanoTime();
+		SolveResult r;
+		if (!checkStartingHeuristics(refRed))
+			r = new SolveResult(SolveResult.Status.UNEVEN_COLORS, null, 0, System.nanoTime() - start);
+		else
+		{
+			Placement[][] matching = table.getMatching(refRed);
+			r = solveFrom(refRed, matching, new Placement[0], start);
+			r.getStats().filtered(table, matching);
+		}
+		SolverStats.GLOBAL.record(refRed, r);
+		return r;
+	}
+	
+	// searches only below a fixed prefix of placements, each of a different piece
+	// matching = table.getMatching(refRed), shared between solvers of the same pattern; prefix must fit together
+	// unlike solve, doesn't add to SolverStats.GLOBAL, so a caller splitting one search into many can add it up once
+	public SolveResult solveFrom(long refRed, Placement[][] matching, Placement[] prefix, long start)
+	{
+		this.placements = matching;
+		this.path = new Placement[table.getNumPieces()];
+		this.pruner = regionPruning ? new RegionPruner(table, refRed) : null;
+		if (!propagation)
+			this.propagator = null;
+		else
+		{
+			if (propagator == null)
+				this.propagator = new Propagator(path.length);
+			propagator.reset(matching);
+			if (possible == null)
+				this.possible = new Placement[path.length][];
+			for (int p = 0; p < path.length; p++)
+				if (possible[p] == null || possible[p].length < matching[p].length)
+					possible[p] = new Placement[matching[p].length];
+			int most = 0;							// a cell is only chosen when fewer cover it than some piece has left
+			for (Placement[] pls : matching)
+				most = Math.max(most, pls.length);
+			if (covering == null)
+				this.covering = new Placement[Bitboard.SIZE * Bitboard.SIZE][];
+			for (int cell = 0; cell < covering.length; cell++)
+				if (covering[cell] == null || covering[cell].length < most)
+					covering[cell] = new Placement[most];
+		}
+		if (forced == null)
+			this.forced = new Placement[path.length];
+		this.numForced = 0;
+		this.stats = new SearchStats(path.length);
+		this.occupied = 0;
+		this.usedPieces = 0;
+		this.steps = 0;
+		this.charged = 0;
+		this.stopped = null;
+		this.solved = false;
+		checkLimits();								// the deadline may have passed already, e.g. while queued
+		for (Placement pl : prefix)
+		{
+			path[pl.getPiece()] = pl;
+			occupied |= pl.getCells();
+			usedPieces |= 1L << pl.getPiece();
+		}
+		if (stopped == null && (prefix.length == 0 || checkHeuristics(occupied, occupied)) && propagate())
+		{
+			if (strategy == Strategy.CELL_FIRST)
+			{
+				this.byFirstCell = PlacementTable.byFirstCell(matching);
+				fillCell(Long.bitCount(usedPieces));
+			}
+			else
+				placePiece(Long.bitCount(usedPieces));
+		}
+		limits.charge(steps - charged);				// the rest, so solvers sharing the limits add up to the total
+		SolveResult.Status status;
+		if (solved)
+			status = SolveResult.Status.SOLVED;
+		else if (stopped != null)
+			status = stopped;
+		else
+			status = SolveResult.Status.NO_SOLUTION;
+		long nanos = System.nanoTime() - start;
+		stats.finish(steps, nanos);
+		return new SolveResult(status, solved ? new Solution(path) : null, steps, nanos, stats);
+	}
+	
+	// depth = number of pieces on the board
+	// with propagation, each node branches on whichever has fewer placements still possible: the piece with the fewest
+	// (ties to the lower index) or the empty cell the fewest cover (any piece; ties to the lower cell, and to the piece
+	// when both have as many), as DancingLinksSolver picks a column. Every solution places that piece once and covers
+	// that cell once, so either way none is lost. Going by pieces alone, a pattern can leave every piece many
+	// placements while some cell has only a few (SolverBenchmark's piece-first-tail took 18.7M steps that way, now 88)
+	// without propagation, choosing by the placements that fit made the search bigger (548,278 steps for the checkerboard
+	// against 54,594, 334,270,652 for the inverted one against 59,105,553), so the pieces go in their fixed order
+	// (Piece.PieceType), biggest first
+	private void placePiece(int depth)
+	{
+		if (depth >= path.length)					// if all the pieces have been placed
+		{
+			solved = true;
+			return;
+		}
+		if (steps >= nextCheck && checkLimits())	// once per node, and the clock and the flags only every so often
+			return;
+		Placement[] candidates;
+		int numCandidates;
+		if (propagator == null)						// for each placement of the next piece that matches the reference
+		{
+			candidates = placements[Long.numberOfTrailingZeros(~usedPieces)];
+			numCandidates = candidates.length;
+		}
+		else										// or for each one propagation left of the piece or cell with fewest
+		{
+			int piece = propagator.getMostConstrained(usedPieces);
+			int cell = propagator.getMostConstrainedCell(propagator.getNumPossible(piece));
+			if (cell >= 0)
+			{
+				candidates = covering[cell];
+				numCandidates = propagator.getCovering(cell, candidates);
+			}
+			else
+			{
+				candidates = possible[piece];
+				numCandidates = propagator.getPossible(piece, candidates);
+			}
+		}
+		for (int k = 0; k < numCandidates; k++)
+		{
+			Placement pl = candidates[k];
+			steps++;
+			long cells = pl.getCells();
+			if ((occupied & cells) != 0)			// skip it if it overlaps a placed piece
+				continue;
+			int pieceIndex = pl.getPiece();
+			occupied |= cells;						// add the piece
+			usedPieces |= 1L << pieceIndex;
+			path[pieceIndex] = pl;
+			stats.fit(depth);
+			if (listener != null)
+				listener.placed(pl, depth);
+			int mark = numForced;
+			if (checkHeuristics(occupied, cells) && propagate())	// if heuristics are ok
+			{
+				placePiece(Long.bitCount(usedPieces));	// repeat for next piece
+				if (solved)
+					return;
+				stats.backtrack();
+				unforce(mark);
+			}
+			occupied &= ~cells;						// remove the piece
+			usedPieces &= ~(1L << pieceIndex);
+			path[pieceIndex] = null;
+			if (listener != null)
+				listener.removed(pl, depth);
+			if (stopped != null)					// a limit was hit further down
+				return;
+		}
+	}
+	
+	// cell-first search: every cell before the first empty one is covered, so only placements starting there can fill it
+	private void fillCell(int depth)
+	{
+		if (depth >= path.length)					// if all the pieces have been placed
+		{
+			solved = true;
+			return;
+		}
+		int cell = Long.numberOfTrailingZeros(~occupied);
+		if (cell >= byFirstCell.length)				// board full but pieces left over; can't happen with the standard set
+			return;
+		if (steps >= nextCheck && checkLimits())
+			return;
+		for (Placement pl : byFirstCell[cell])		// otherwise for each placement that starts at the first empty cell
+		{
+			steps++;
+			long cells = pl.getCells();
+			if (path[pl.getPiece()] != null || (occupied & cells) != 0)	// skip it if the piece is used or it overlaps
+				continue;
+			occupied |= cells;						// add the piece
+			usedPieces |= 1L << pl.getPiece();
+			path[pl.getPiece()] = pl;
+			stats.fit(depth);
+			if (listener != null)
+				listener.placed(pl, depth);
+			int mark = numForced;
+			if (checkHeuristics(occupied, cells) && propagate())	// if heuristics are ok
+			{
+				fillCell(Long.bitCount(usedPieces));	// repeat for next empty cell
+				if (solved)
+					return;
+				stats.backtrack();
+				unforce(mark);
+			}
+			occupied &= ~cells;						// remove the piece
+			usedPieces &= ~(1L << pl.getPiece());
+			path[pl.getPiece()] = null;
+			if (listener != null)
+				listener.removed(pl, depth);
+			if (stopped != null)
+				return;
+		}
+	}
+	
+	// adds the placements propagation finds forced (one step each); false, with none added, if the board is a dead end
+	private boolean propagate()
+	{
+		if (propagator == null)
+			return true;
+		if (!propagator.propagate(occupied, usedPieces))
+		{
+			stats.deadEnd();
+			return false;
+		}
+		for (int k = 0; k < propagator.getNumForced(); k++)
+		{
+			Placement pl = propagator.getForced(k);
+			int depth = Long.bitCount(usedPieces);
+			steps++;
+			stats.fit(depth);
+			stats.forced();
+			occupied |= pl.getCells();
+			usedPieces |= 1L << pl.getPiece();
+			path[pl.getPiece()] = pl;
+			forced[numForced++] = pl;
+			if (listener != null)
+				listener.placed(pl, depth);
+		}
+		return true;
+	}
+	
+	// undoes a successful propagate: takes the forced placements back off, newest first, down to the first mark of them
+	private void unforce(int mark)
+	{
+		if (propagator != null)
+			propagator.pop();
+		while (numForced > mark)
+		{
+			Placement pl = forced[--numForced];
+			occupied &= ~pl.getCells();
+			usedPieces &= ~(1L << pl.getPiece());
+			path[pl.getPiece()] = null;
+			if (listener != null)
+				listener.removed(pl, Long.bitCount(usedPieces));
+		}
+	}
+	
+	// every so many steps (checked on entering a node, so the loop over candidates costs nothing extra):
+	// charges them to the limits and looks for cancel; true if the search has to stop
+	private boolean checkLimits()
+	{
+		if (stopped == null)
+		{
+			if (cancelled.get())
+				stopped = SolveResult.Status.CANCELLED;
+			else
+				stopped = limits.charge(steps - charged);
+			charged = steps;
+			nextCheck = steps + limits.nextCheck();
+		}
+		return stopped != null;
+	}
+	
+	// heuristics to check at each node of the search; placed = cells covered by the newest piece(s)
+	// counts which one turned the board down in stats
+	private boolean checkHeuristics(long occupied, long placed)
+	{
+		// heuristic #1: two or less 1x1 holes exist
+		if (!checkHeuristics(occupied))
+		{
+			stats.hole();
+			return false;
+		}
+		// heuristic #2 (optional): every small empty region next to the new piece can be filled by the remaining pieces
+		if (regionPruning && !pruner.isFeasible(occupied, usedPieces, placed))
+		{
+			stats.region();
+			return false;
+		}
+		return true;
+	}
+	
+	// the cheap heuristics that only need the board (also used by SolutionEnumerator)
+	public static boolean checkHeuristics(long occupied)
+	{
+		// heuristic #1: two or less 1x1 holes exist
+		return (Bitboard.countSingleHoles(occupied) <= 2);
+	}
+	
+	// heuristics for identifying impossible configurations from the beginning before placePiece search
+	public boolean checkStartingHeuristics(long refRed)
+	{
+		// starting heuristic #1: the pieces have a fixed number of red cells (32 for the standard set), so the reference needs the same
+		return Long.bitCount(refRed) == table.getNumRed();
+	}
+}
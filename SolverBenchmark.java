@@ -0,0 +1,457 @@
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+// times the solver hot paths against a fixed corpus of patterns, so a change can be checked for regressions before it goes in
+// every benchmark is run for a warmup period, then for a measured period; each line of output is
+//		<name> <ops/s> <us/op> <steps/op> <nodes/s> <bytes/op>
+// steps are deterministic, so any change in steps/op means the search itself changed, not just its speed
+// bytes/op is what the benchmark thread allocated (com.sun.management.ThreadMXBean), which is why the parallel engine isn't here
+// the wide engine (WideSolver) is run on the checkerboard and the inverted checkerboard at each size in WIDE_SIZES, with the
+// piece sets in pieces/ (the standard set at 8x8, so it can be compared with the one-word engines)
+//
+// with -save, the results are written to a file; with -baseline, they're compared against such a file, and the exit code is 1
+// if any benchmark takes more steps, or is more than 10% slower
+//
+// usage: java SolverBenchmark [-engine dfs,cells,dlx,wide] [-warmup s] [-time s] [-only prefix] [-save file] [-baseline file]
+public class SolverBenchmark
+{
+	public static final double SLOWER = 1.10;		// slowdown that counts as a regression against the baseline
+	public static final int[] WIDE_SIZES = {8, 10, 12, 16};
+	
+	// name, pattern (see Bitboard.parsePattern)
+	// random-* are tilings picked at random, colored by their pieces, so they are solvable but don't look like the checkerboard
+	// unsolvable-swap is random-1 with one red and one black cell swapped
+	// piece-first-tail is another random one, which took the piece-first search 18.7M steps when it only branched on pieces
+	public static final String[][] CORPUS = {
+		{"checkerboard",		"brbrbrbrrbrbrbrbbrbrbrbrrbrbrbrbbrbrbrbrrbrbrbrbbrbrbrbrrbrbrbrb"},
+		{"inverted",			"rbrbrbrbbrbrbrbrrbrbrbrbbrbrbrbrrbrbrbrbbrbrbrbrrbrbrbrbbrbrbrbr"},
+		{"unsolvable-halves",	"rrrrrrrrrrrrrrrrrrrrrrrrrrrrrrrrbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbbb"},
+		{"unsolvable-swap",		"rrbrrbrrrbrrbrbbrbrbbrbrbrbrrbrbbbrbrrbbrbrbrbrbbrbbrbrbrbrbrbrb"},
+		{"random-1",			"brbrrbrrrbrrbrbbrbrbbrbrbrbrrbrbbbrbrrbbrbrbrbrrbrbbrbrbrbrbrbrb"},
+		{"random-2",			"rrbrbrrbbrbbrbrrrbbbrrbbbbrrbbbrrbrbrbrbbrrbbrrrrbbrbrbrbrbrbrbr"},
+		{"random-3",			"rbrrbbbrbrrbbrrbbrbrbbbrrbrbrrbbrrbrbrrbbrbbrrbrrbrrbrbbrbrbrbrb"},
+		{"random-4",			"rbbbrbrbbbrbbbbrrrbrrrrbbbrbbbrrrbbrrbrbrrrrbrbrbrbrrbrbbrbrbrbr"},
+		{"piece-first-tail",	"brbrbrbrrrbrbbrbbbrbbrbrbrbrrbrbrbrrbrbrbrbbrbrrrbrbrrbbbrbrbbrr"},
+	};
+	
+	// one timed operation; returns the search steps it took, or anything else for the micro benchmarks
+	// ops = number of calls to the code under test per run, so the micro benchmarks can batch many of them
+	private static abstract class Benchmark
+	{
+		private final String name;
+		private final int ops;
+		private final boolean countsSteps;
+		
+		Benchmark(String name, int ops, boolean countsSteps)
+		{
+			this.name = name;
+			this.ops = ops;
+			this.countsSteps = countsSteps;
+		}
+		
+		abstract long run();
+	}
+	
+	// what one benchmark measured, per call to the code under test
+	private static class Result
+	{
+		private final String name;
+		private final double nanosPerOp;
+		private final double stepsPerOp;		// -1 if the benchmark doesn't count steps
+		private final double bytesPerOp;		// -1 if allocation can't be measured on this JVM
+		
+		Result(String name, double nanosPerOp, double stepsPerOp, double bytesPerOp)
+		{
+			this.name = name;
+			this.nanosPerOp = nanosPerOp;
+			this.stepsPerOp = stepsPerOp;
+			this.bytesPerOp = bytesPerOp;
+		}
+		
+		public String toString()
+		{
+			return String.format("%-36s %14.1f %14.3f %14s %14s %12s", name, 1e9 / nanosPerOp, nanosPerOp / 1e3,
+					stepsPerOp < 0 ? "-" : String.format("%.0f", stepsPerOp),
+					stepsPerOp < 0 ? "-" : String.format("%.0f", stepsPerOp * 1e9 / nanosPerOp),
+					bytesPerOp < 0 ? "-" : String.format("%.0f", bytesPerOp));
+		}
+	}
+	
+	private final long warmupNanos;
+	private final long measureNanos;
+	private final com.sun.management.ThreadMXBean threads;	// null if allocation can't be measured
+	private long sink;										// results of the micro benchmarks go here so they can't be optimized away
+	
+	public SolverBenchmark(double warmupSeconds, double measureSeconds)
+	{
+		this.warmupNanos = (long)(warmupSeconds * 1e9);
+		this.measureNanos = (long)(measureSeconds * 1e9);
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean && ((com.sun.management.ThreadMXBean)bean).isThreadAllocatedMemorySupported())
+		{
+			this.threads = (com.sun.management.ThreadMXBean)bean;
+			threads.setThreadAllocatedMemoryEnabled(true);
+		}
+		else
+			this.threads = null;
+	}
+	
+	public static void main(String[] args) throws IOException
+	{
+		String[] engines = {"dfs", "cells", "dlx", "wide"};
+		double warmup = 1;
+		double time = 2;
+		String only = "";
+		String save = null;
+		String baseline = null;
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-engine"))
+				engines = args[++i].split(",");
+			else if (args[i].equals("-warmup"))
+				warmup = Double.parseDouble(args[++i]);
+			else if (args[i].equals("-time"))
+				time = Double.parseDouble(args[++i]);
+			else if (args[i].equals("-only"))
+				only = args[++i];
+			else if (args[i].equals("-save"))
+				save = args[++i];
+			else if (args[i].equals("-baseline"))
+				baseline = args[++i];
+			else
+				throw new IllegalArgumentException("unknown option: " + args[i]);
+		}
+		
+		SolverBenchmark bench = new SolverBenchmark(warmup, time);
+		ArrayList<Benchmark> benchmarks = new ArrayList<Benchmark>();
+		for (String engine : engines)
+		{
+			if (engine.equals("wide"))
+			{
+				for (int size : WIDE_SIZES)
+				{
+					WideSolver w = new WideSolver(size == 8 ? PieceSet.standard() :
+							PieceSet.load(SolverBenchmark.class.getResourceAsStream("pieces/" + size + "x" + size + ".txt")), size, size);
+					long[] checkerboard = w.checkerboard();
+					long[] inverted = w.checkerboard();
+					for (int n = 0; n < inverted.length; n++)
+						inverted[n] = ~inverted[n];
+					if ((size * size) % 64 != 0)
+						inverted[inverted.length - 1] &= ~(-1L << (size * size));	// no red past the last cell
+					benchmarks.add(bench.solveWide(w, "checkerboard", checkerboard));
+					benchmarks.add(bench.solveWide(w, "inverted", inverted));
+				}
+			}
+			else
+				for (String[] c : CORPUS)
+					benchmarks.add(bench.solve(engine, c[0], Bitboard.parsePattern(c[1])));
+		}
+		benchmarks.add(bench.heuristics());
+		benchmarks.add(bench.propagate());
+		benchmarks.add(bench.node(Solver.Strategy.PIECE_FIRST));
+		benchmarks.add(bench.node(Solver.Strategy.CELL_FIRST));
+		benchmarks.add(bench.rotate());
+		benchmarks.add(bench.colorMap());
+		
+		HashMap<String, Result> base = baseline == null ? null : load(baseline);
+		ArrayList<Result> results = new ArrayList<Result>();
+		boolean regressed = false;
+		System.out.println(String.format("%-36s %14s %14s %14s %14s %12s", "benchmark", "ops/s", "us/op", "steps/op", "nodes/s", "bytes/op"));
+		for (Benchmark b : benchmarks)
+		{
+			if (!b.name.startsWith(only))
+				continue;
+			Result r = bench.measure(b);
+			results.add(r);
+			String line = r.toString();
+			if (base != null && base.containsKey(r.name))
+			{
+				Result old = base.get(r.name);
+				String note = String.format(" %+.1f%%", 100 * (r.nanosPerOp / old.nanosPerOp - 1));
+				if (r.nanosPerOp > old.nanosPerOp * SLOWER)
+				{
+					note += " SLOWER";
+					regressed = true;
+				}
+				if (r.stepsPerOp > old.stepsPerOp)
+				{
+					note += " MORE STEPS (was " + String.format("%.0f", old.stepsPerOp) + ")";
+					regressed = true;
+				}
+				else if (r.stepsPerOp < old.stepsPerOp)
+					note += " fewer steps (was " + String.format("%.0f", old.stepsPerOp) + ")";
+				line += note;
+			}
+			System.out.println(line);
+		}
+		if (save != null)
+			save(save, results);
+		if (regressed)
+			System.exit(1);
+	}
+	
+	// warms b up, then runs it until the measuring time is up
+	public Result measure(Benchmark b)
+	{
+		long end = System.nanoTime() + warmupNanos;
+		do
+			sink += b.run();
+		while (System.nanoTime() < end);
+		
+		long runs = 0;
+		long steps = 0;
+		long startBytes = allocatedBytes();
+		long start = System.nanoTime();
+		end = start + measureNanos;
+		long now;
+		do
+		{
+			steps += b.run();
+			runs++;
+			now = System.nanoTime();
+		}
+		while (now < end);
+		long bytes = allocatedBytes() - startBytes;
+		sink += steps;
+		
+		double ops = (double)runs * b.ops;
+		return new Result(b.name, (now - start) / ops, b.countsSteps ? steps / ops : -1, threads == null ? -1 : bytes / ops);
+	}
+	
+	private long allocatedBytes()
+	{
+		if (threads == null)
+			return 0;
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+	
+	// a full solve of one pattern; the same engine is reused, like in BatchSolver
+	public Benchmark solve(String engine, String pattern, final long refRed)
+	{
+		final SolverEngine e;
+		if (engine.equals("dfs") || engine.equals("cells"))
+		{
+			Solver s = new Solver();
+			if (engine.equals("cells"))
+				s.setStrategy(Solver.Strategy.CELL_FIRST);
+			e = s;
+		}
+		else if (engine.equals("dlx"))
+			e = new DancingLinksSolver();
+		else
+			throw new IllegalArgumentException("unknown engine: " + engine);
+		return new Benchmark("solve." + engine + "." + pattern, 1, true)
+		{
+			long run()
+			{
+				return e.solve(refRed).getSteps();
+			}
+		};
+	}
+	
+	// a full solve of a pattern on a board of any size
+	public Benchmark solveWide(final WideSolver w, String pattern, final long[] refRed)
+	{
+		return new Benchmark("solve.wide." + w.getRows() + "x" + w.getCols() + "." + pattern, 1, true)
+		{
+			long run()
+			{
+				return w.solve(refRed).getSteps();
+			}
+		};
+	}
+	
+	// Solver.checkHeuristics on the boards the search passes through on the way to each solution in the corpus
+	public Benchmark heuristics()
+	{
+		ArrayList<Long> list = new ArrayList<Long>();
+		for (Solution sol : solutions())
+		{
+			long occupied = 0;
+			for (Placement pl : sol.getPlacements())
+			{
+				occupied |= pl.getCells();
+				list.add(occupied);
+			}
+		}
+		final long[] boards = new long[list.size()];
+		for (int n = 0; n < boards.length; n++)
+			boards[n] = list.get(n);
+		return new Benchmark("checkHeuristics", boards.length, false)
+		{
+			long run()
+			{
+				long ok = 0;
+				for (long b : boards)
+					if (Solver.checkHeuristics(b))
+						ok++;
+				return ok;
+			}
+		};
+	}
+	
+	// Propagator.propagate down each corpus solution, a piece at a time along with the placements it forces, then pop()
+	// back up to the top, the way the search goes down to a solution and backs out of it
+	public Benchmark propagate()
+	{
+		final ArrayList<Solution> solutions = solutions();
+		final Propagator[] propagators = new Propagator[solutions.size()];
+		long calls = 0;
+		for (int n = 0; n < propagators.length; n++)
+		{
+			propagators[n] = new Propagator(PlacementTable.STANDARD.getNumPieces());
+			propagators[n].reset(PlacementTable.STANDARD.getMatching(solutions.get(n).getRedCells()));
+			calls += propagateDown(propagators[n], solutions.get(n));
+		}
+		return new Benchmark("propagator.propagate", (int)calls, false)
+		{
+			long run()
+			{
+				long sum = 0;
+				for (int n = 0; n < propagators.length; n++)
+					sum += propagateDown(propagators[n], solutions.get(n));
+				return sum;
+			}
+		};
+	}
+	
+	// returns the number of propagate calls, each one popped again before it returns
+	private static int propagateDown(Propagator prop, Solution sol)
+	{
+		long occupied = 0;
+		long usedPieces = 0;
+		int levels = 0;
+		for (Placement pl : sol.getPlacements())
+		{
+			if ((usedPieces & (1L << pl.getPiece())) != 0)		// forced already
+				continue;
+			occupied |= pl.getCells();
+			usedPieces |= 1L << pl.getPiece();
+			if (!prop.propagate(occupied, usedPieces))
+				throw new IllegalStateException("a board on the way to a solution can't be a dead end");
+			for (int k = 0; k < prop.getNumForced(); k++)
+			{
+				occupied |= prop.getForced(k).getCells();
+				usedPieces |= 1L << prop.getForced(k).getPiece();
+			}
+			levels++;
+		}
+		for (int k = 0; k < levels; k++)
+			prop.pop();
+		return levels;
+	}
+	
+	// one node of Solver's search: a placement tried, the heuristics and propagation on the board it makes, and taking it
+	// (and what it forced) back off; timed as full solves of the solvable corpus patterns, per step they take, so it is
+	// the code the search runs rather than a copy of it (with propagation on, a forced placement is a step as well)
+	public Benchmark node(final Solver.Strategy strategy)
+	{
+		final Solver s = new Solver();
+		s.setStrategy(strategy);
+		final ArrayList<Long> patterns = new ArrayList<Long>();
+		long steps = 0;
+		for (Solution sol : solutions())
+		{
+			patterns.add(sol.getRedCells());
+			steps += s.solve(sol.getRedCells()).getSteps();
+		}
+		return new Benchmark("solver.node." + strategy.name().toLowerCase().replace('_', '-'), (int)steps, false)
+		{
+			long run()
+			{
+				long sum = 0;
+				for (long refRed : patterns)
+					sum += s.solve(refRed).getSteps();
+				return sum;
+			}
+		};
+	}
+	
+	public Benchmark rotate()
+	{
+		final Piece[] pieces = allPieces();
+		return new Benchmark("piece.rotateCW", pieces.length * 4, false)
+		{
+			long run()
+			{
+				long sum = 0;
+				for (Piece p : pieces)
+				{
+					for (int o = 0; o < 4; o++)
+						p.rotateCW();
+					sum += p.getOrientation();
+				}
+				return sum;
+			}
+		};
+	}
+	
+	// four-colors each solvable pattern's solution with ColorMap, the way the frame does after a solve
+	public Benchmark colorMap()
+	{
+		final ArrayList<Solution> solutions = solutions();
+		return new Benchmark("colorMap", solutions.size(), false)
+		{
+			long run()
+			{
+				long colored = 0;
+				for (Solution sol : solutions)
+					if (new ColorMap(sol).color(4))
+						colored++;
+				return colored;
+			}
+		};
+	}
+	
+	private static Piece[] allPieces()
+	{
+		Piece.PieceType[] types = Piece.PieceType.values();
+		Piece[] pieces = new Piece[types.length];
+		for (int n = 0; n < types.length; n++)
+			pieces[n] = new Piece(types[n]);
+		return pieces;
+	}
+	
+	// a solution of every solvable pattern in the corpus
+	private static ArrayList<Solution> solutions()
+	{
+		ArrayList<Solution> solutions = new ArrayList<Solution>();
+		DancingLinksSolver dlx = new DancingLinksSolver();
+		for (String[] c : CORPUS)
+		{
+			SolveResult r = dlx.solve(Bitboard.parsePattern(c[1]));
+			if (r.isSolved())
+				solutions.add(r.getSolution());
+		}
+		return solutions;
+	}
+	
+	// baseline file: one line per benchmark, <name> <ns/op> <steps/op>
+	private static void save(String file, ArrayList<Result> results) throws IOException
+	{
+		PrintWriter out = new PrintWriter(file);
+		for (Result r : results)
+			out.println(r.name + " " + r.nanosPerOp + " " + r.stepsPerOp);
+		out.close();
+	}
+	
+	private static HashMap<String, Result> load(String file) throws IOException
+	{
+		HashMap<String, Result> results = new HashMap<String, Result>();
+		BufferedReader in = new BufferedReader(new FileReader(file));
+		String line;
+		while ((line = in.readLine()) != null)
+		{
+			String[] f = line.trim().split("\\s+");
+			if (f.length == 3)
+				results.put(f[0], new Result(f[0], Double.parseDouble(f[1]), Double.parseDouble(f[2]), -1));
+		}
+		in.close();
+		return results;
+	}
+}
@@ -0,0 +1,12 @@
+// a search strategy that can solve reference patterns; see Solver and ParallelSolver
+public interface SolverEngine
+{
+	// refRed = bitboard of red cells of the reference pattern
+	SolveResult solve(long refRed);
+	
+	// stops a running solve
+	void cancel();
+	
+	// deadline and/or step budget for the next solve (SearchLimits.NONE by default)
+	void setLimits(SearchLimits limits);
+}
@@ -0,0 +1,9 @@
+// receives progress events from a Solver; called on the solver's thread
+public interface SolverListener
+{
+	// a piece was added to the board at the given search depth
+	void placed(Placement pl, int depth);
+	
+	// a piece was taken back off the board
+	void removed(Placement pl, int depth);
+}
@@ -0,0 +1,190 @@
+import java.lang.management.ManagementFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// running totals of every search the engines have finished, so it shows which patterns blow the search up and why
+// the engines count into their own SearchStats while they search and add it here once at the end, so the lock is
+// taken once per pattern, not once per node
+// register() publishes it as an MBean; snapshot() is the same numbers for code
+public class SolverStats implements SolverStatsMBean
+{
+	public static final SolverStats GLOBAL = new SolverStats();
+	public static final String OBJECT_NAME = "Kaleidoscope:type=SolverStats";
+	
+	private SearchStats total = new SearchStats(0);
+	private final long[] statuses = new long[SolveResult.Status.values().length];	// number of results with each status
+	private long largestSteps = -1;
+	private long largestPattern;			// red cells of the search that took the most steps
+	
+	// publishes GLOBAL on the platform MBean server; returns false if that isn't possible
+	public static boolean register()
+	{
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer().registerMBean(GLOBAL, new ObjectName(OBJECT_NAME));
+			return true;
+		}
+		catch (InstanceAlreadyExistsException e)
+		{
+			return true;
+		}
+		catch (JMException e)
+		{
+			return false;
+		}
+	}
+	
+	// adds one finished search; refRed = the pattern it was for
+	public synchronized void record(long refRed, SolveResult r)
+	{
+		total.add(r.getStats());
+		statuses[r.getStatus().ordinal()]++;
+		if (r.getSteps() > largestSteps)
+		{
+			largestSteps = r.getSteps();
+			largestPattern = refRed;
+		}
+	}
+	
+	// a copy of the totals so far
+	public synchronized SearchStats snapshot()
+	{
+		return total.getCopy();
+	}
+	
+	public synchronized long getCount(SolveResult.Status status)
+	{
+		return statuses[status.ordinal()];
+	}
+	
+	public synchronized void reset()
+	{
+		total = new SearchStats(0);
+		for (int s = 0; s < statuses.length; s++)
+			statuses[s] = 0;
+		largestSteps = -1;
+		largestPattern = 0;
+	}
+	
+	public synchronized long getSearches()
+	{
+		long sum = 0;
+		for (long n : statuses)
+			sum += n;
+		return sum;
+	}
+	
+	public long getSolved()
+	{
+		return getCount(SolveResult.Status.SOLVED);
+	}
+	
+	public long getNoSolution()
+	{
+		return getCount(SolveResult.Status.NO_SOLUTION);
+	}
+	
+	public long getUnevenColors()
+	{
+		return getCount(SolveResult.Status.UNEVEN_COLORS);
+	}
+	
+	public long getCancelled()
+	{
+		return getCount(SolveResult.Status.CANCELLED);
+	}
+	
+	public long getTimedOut()
+	{
+		return getCount(SolveResult.Status.TIMED_OUT);
+	}
+	
+	public long getStepLimited()
+	{
+		return getCount(SolveResult.Status.STEP_LIMIT);
+	}
+	
+	public synchronized long getAttempted()
+	{
+		return total.getAttempted();
+	}
+	
+	public synchronized long getFitted()
+	{
+		return total.getFitted();
+	}
+	
+	public synchronized long getOverlaps()
+	{
+		return total.getOverlaps();
+	}
+	
+	public synchronized long getHoleRejections()
+	{
+		return total.getHoleRejections();
+	}
+	
+	public synchronized long getRegionRejections()
+	{
+		return total.getRegionRejections();
+	}
+	
+	public synchronized long getDeadEnds()
+	{
+		return total.getDeadEnds();
+	}
+	
+	public synchronized long getForced()
+	{
+		return total.getForced();
+	}
+	
+	public synchronized long getColorMismatches()
+	{
+		return total.getColorMismatches();
+	}
+	
+	public synchronized long getOutOfBounds()
+	{
+		return total.getOutOfBounds();
+	}
+	
+	public synchronized long getBacktracks()
+	{
+		return total.getBacktracks();
+	}
+	
+	public synchronized long[] getNodesPerDepth()
+	{
+		return total.getNodes();
+	}
+	
+	public synchronized double getSearchMillis()
+	{
+		return total.getNanos() / 1e6;
+	}
+	
+	public synchronized double getNodesPerSecond()
+	{
+		return total.getNodesPerSecond();
+	}
+	
+	public synchronized long getLargestSearchSteps()
+	{
+		return Math.max(largestSteps, 0);
+	}
+	
+	// the pattern as 64 'r'/'b' characters (see Bitboard.toPattern), or "" before any search
+	public synchronized String getLargestSearchPattern()
+	{
+		return largestSteps < 0 ? "" : Bitboard.toPattern(largestPattern);
+	}
+	
+	public synchronized String toString()
+	{
+		return "solved=" + getSolved() + " noSolution=" + getNoSolution() + " unevenColors=" + getUnevenColors()
+			+ " cancelled=" + getCancelled() + " timedOut=" + getTimedOut() + " stepLimit=" + getStepLimited() + " " + total;
+	}
+}
@@ -0,0 +1,31 @@
+// what SolverStats publishes over JMX (e.g. in jconsole, under Kaleidoscope:type=SolverStats)
+public interface SolverStatsMBean
+{
+	long getSearches();
+	long getSolved();
+	long getNoSolution();
+	long getUnevenColors();
+	long getCancelled();
+	long getTimedOut();
+	long getStepLimited();
+	
+	long getAttempted();
+	long getFitted();
+	long getOverlaps();
+	long getHoleRejections();
+	long getRegionRejections();
+	long getDeadEnds();
+	long getForced();
+	long getColorMismatches();
+	long getOutOfBounds();
+	long getBacktracks();
+	long[] getNodesPerDepth();
+	
+	double getSearchMillis();
+	double getNodesPerSecond();
+	
+	long getLargestSearchSteps();
+	String getLargestSearchPattern();
+	
+	void reset();
+}
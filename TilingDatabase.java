@@ -0,0 +1,167 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// answers solves from a precomputed file of tilings (see TilingDatabaseBuilder) instead of searching
+// the file is a header followed by fixed-size records sorted by pattern, one per distinct pattern:
+//		header:	"KTDB", version, number of pieces, flags, number of records (int, int, int, int, long; big-endian)
+//		record:	pattern (long, red = bit set), then per piece the index of its placement in PlacementTable.getPlacements (short)
+// the records are memory-mapped and binary-searched, so a lookup reads a couple of dozen pages at most and the OS caches them
+// a database built from every tiling is marked complete, and then a pattern that isn't in it has no solution;
+// otherwise a miss is passed on to the fallback engine
+public class TilingDatabase implements SolverEngine
+{
+	public static final int MAGIC = 0x4b544442;		// "KTDB"
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 24;
+	public static final int FLAG_COMPLETE = 1;		// built from every tiling of the board
+	
+	private final PlacementTable table;
+	private final Placement[][] placements;			// per piece, the table's placements, to decode records
+	private final int recordSize;
+	private final long numRecords;
+	private final boolean complete;
+	private final MappedByteBuffer[] segments;		// a mapping can't pass 2 GB, so each segment holds a whole number of records
+	private final long recordsPerSegment;
+	private SolverEngine fallback;
+	
+	public TilingDatabase(String file) throws IOException
+	{
+		this(PlacementTable.STANDARD, file);
+	}
+	
+	// throws IOException if the file isn't a database for table's pieces
+	public TilingDatabase(PlacementTable table, String file) throws IOException
+	{
+		this.table = table;
+		this.placements = new Placement[table.getNumPieces()][];
+		for (int n = 0; n < placements.length; n++)
+			placements[n] = table.getPlacements(n);
+		this.recordSize = recordSize(placements.length);
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if (header.getInt() != MAGIC || header.getInt() != VERSION)
+				throw new IOException(file + " is not a tiling database");
+			if (header.getInt() != placements.length)
+				throw new IOException(file + " is for a different set of pieces");
+			this.complete = (header.getInt() & FLAG_COMPLETE) != 0;
+			this.numRecords = header.getLong();
+			if (channel.size() != HEADER_SIZE + numRecords * recordSize)
+				throw new IOException(file + " is truncated");
+			this.recordsPerSegment = Integer.MAX_VALUE / recordSize;
+			this.segments = new MappedByteBuffer[(int)((numRecords + recordsPerSegment - 1) / recordsPerSegment)];
+			for (int s = 0; s < segments.length; s++)
+			{
+				long first = s * recordsPerSegment;
+				long count = Math.min(recordsPerSegment, numRecords - first);
+				segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + first * recordSize, count * recordSize);
+			}
+		}
+		finally
+		{
+			raf.close();		// the mappings stay valid after the channel is closed
+		}
+		this.fallback = complete ? null : new DancingLinksSolver(table);
+	}
+	
+	// bytes per record for a set of pieces
+	public static int recordSize(int numPieces)
+	{
+		return 8 + 2 * numPieces;
+	}
+	
+	// engine for patterns that aren't in an incomplete database (DancingLinksSolver by default); ignored if it's complete
+	public void setFallback(SolverEngine engine)
+	{
+		this.fallback = engine;
+	}
+	
+	public boolean isComplete()
+	{
+		return complete;
+	}
+	
+	public long getNumRecords()
+	{
+		return numRecords;
+	}
+	
+	// nothing to stop in a lookup; passed on to the fallback
+	public void cancel()
+	{
+		if (fallback != null)
+			fallback.cancel();
+	}
+	
+	// a lookup takes microseconds, so only the fallback's searches are limited
+	public void setLimits(SearchLimits limits)
+	{
+		if (fallback != null)
+			fallback.setLimits(limits);
+	}
+	
+	// steps = records probed by the binary search
+	public SolveResult solve(long refRed)
+	{
+		long start = System.nanoTime();
+		SolveResult r;
+		if (Long.bitCount(refRed) != table.getNumRed())
+			r = new SolveResult(SolveResult.Status.UNEVEN_COLORS, null, 0, System.nanoTime() - start);
+		else
+		{
+			long lo = 0, hi = numRecords - 1;
+			long found = -1;
+			int probes = 0;
+			while (lo <= hi)
+			{
+				long mid = (lo + hi) >>> 1;
+				long pattern = getPattern(mid);
+				probes++;
+				if (pattern < refRed)
+					lo = mid + 1;
+				else if (pattern > refRed)
+					hi = mid - 1;
+				else
+				{
+					found = mid;
+					break;
+				}
+			}
+			if (found >= 0)
+				r = new SolveResult(SolveResult.Status.SOLVED, getSolution(found), probes, System.nanoTime() - start);
+			else if (!complete && fallback != null)
+				return fallback.solve(refRed);		// records its own stats
+			else
+				r = new SolveResult(SolveResult.Status.NO_SOLUTION, null, probes, System.nanoTime() - start);
+		}
+		SolverStats.GLOBAL.record(refRed, r);
+		return r;
+	}
+	
+	// the pattern of the n'th record, in increasing order
+	public long getPattern(long n)
+	{
+		return segments[(int)(n / recordsPerSegment)].getLong((int)(n % recordsPerSegment) * recordSize);
+	}
+	
+	// the tiling stored with the n'th record
+	public Solution getSolution(long n)
+	{
+		MappedByteBuffer segment = segments[(int)(n / recordsPerSegment)];
+		int offset = (int)(n % recordsPerSegment) * recordSize + 8;
+		Placement[] path = new Placement[placements.length];
+		for (int p = 0; p < path.length; p++)
+			path[p] = placements[p][segment.getShort(offset + 2 * p)];
+		return new Solution(path);
+	}
+	
+	public String toString()
+	{
+		return numRecords + " patterns" + (complete ? " (complete)" : "");
+	}
+}
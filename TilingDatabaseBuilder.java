@@ -0,0 +1,547 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// builds a TilingDatabase file by enumerating every tiling of the board with a cell-first search over every placement
+// (no reference, so every piece can go anywhere), keeping one tiling per pattern
+// the search is split on its first two placements into tasks for a pool of threads
+// the records can be far more than fit in memory, so it's an external sort: each thread fills a buffer of records,
+// sorts it, drops repeated patterns and writes it out as a run in the temp directory; at the end the runs are merged
+// (always taking the smallest pattern at the front of any run), at most MERGE_WAYS at a time, into longer runs and
+// finally into the database, which is written next to the target and renamed over it once it's finished
+// with -limit the enumeration stops after that many tilings and, unless that was the last one, the database isn't
+// marked complete
+// a full build is out of reach: -estimate puts the standard set at about 8e15 tilings and 5.4e17 steps (2M probes,
+// +-12%), some 2,000 core-years at ~8.5M steps/s and ~360 PB of runs, so in practice databases are built with -limit
+//
+// usage: java TilingDatabaseBuilder [-threads n] [-limit tilings] [-run records] [-tmp dir] <database>
+//		  java TilingDatabaseBuilder -estimate probes
+public class TilingDatabaseBuilder
+{
+	public static final int DEFAULT_RUN_SIZE = 1 << 19;		// records per thread before a run is written (~22 MB)
+	public static final int MERGE_WAYS = 64;				// runs open at once in a merge, each with a 64 KB buffer
+	
+	private final int numPieces;
+	private final Placement[][] byFirstCell;		// every placement, by the lowest cell it covers
+	private final short[][] indexes;				// and its index in table.getPlacements(piece), for the records
+	private final int numThreads;
+	private final int runSize;
+	private final File tmpDir;
+	private long limit = Long.MAX_VALUE;
+	
+	private final AtomicBoolean stopped = new AtomicBoolean();
+	private final AtomicBoolean cutShort = new AtomicBoolean();	// stopped with part of the search not done
+	private final AtomicLong numTilings = new AtomicLong();
+	private final AtomicLong numSteps = new AtomicLong();
+	private final AtomicInteger numRuns = new AtomicInteger();
+	private final ArrayList<File> runs = new ArrayList<File>();
+	private final ArrayList<RunBuffer> buffers = new ArrayList<RunBuffer>();
+	private IOException failure;				// first error writing a run, rethrown by build
+	
+	public TilingDatabaseBuilder(PlacementTable table, int numThreads, int runSize, File tmpDir)
+	{
+		this.numPieces = table.getNumPieces();
+		this.numThreads = numThreads;
+		this.runSize = runSize;
+		this.tmpDir = tmpDir;
+		
+		int numCells = Bitboard.SIZE * Bitboard.SIZE;
+		ArrayList<ArrayList<Placement>> cells = new ArrayList<ArrayList<Placement>>();
+		ArrayList<ArrayList<Short>> cellIndexes = new ArrayList<ArrayList<Short>>();
+		for (int c = 0; c < numCells; c++)
+		{
+			cells.add(new ArrayList<Placement>());
+			cellIndexes.add(new ArrayList<Short>());
+		}
+		for (int p = 0; p < numPieces; p++)
+		{
+			Placement[] pls = table.getPlacements(p);
+			for (int k = 0; k < pls.length; k++)
+			{
+				int c = Long.numberOfTrailingZeros(pls[k].getCells());
+				cells.get(c).add(pls[k]);
+				cellIndexes.get(c).add((short)k);
+			}
+		}
+		this.byFirstCell = new Placement[numCells][];
+		this.indexes = new short[numCells][];
+		for (int c = 0; c < numCells; c++)
+		{
+			byFirstCell[c] = cells.get(c).toArray(new Placement[0]);
+			indexes[c] = new short[byFirstCell[c].length];
+			for (int k = 0; k < indexes[c].length; k++)
+				indexes[c][k] = cellIndexes.get(c).get(k);
+		}
+	}
+	
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		int threads = Runtime.getRuntime().availableProcessors();
+		long limit = Long.MAX_VALUE;
+		int runSize = DEFAULT_RUN_SIZE;
+		long probes = 0;
+		String tmp = null;
+		String file = null;
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-estimate"))
+				probes = Long.parseLong(args[++i]);
+			else if (args[i].equals("-threads"))
+				threads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-limit"))
+				limit = Long.parseLong(args[++i]);
+			else if (args[i].equals("-run"))
+				runSize = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-tmp"))
+				tmp = args[++i];
+			else
+				file = args[i];
+		}
+		if (probes > 0)
+		{
+			TilingDatabaseBuilder builder = new TilingDatabaseBuilder(PlacementTable.STANDARD, 1, 1, null);
+			double[] e = builder.estimate(probes, 1);
+			System.out.println(String.format("about %.3g tilings (+-%.2g), %.3g steps, %.3g bytes of runs", e[0], e[1], e[2],
+					e[0] * TilingDatabase.recordSize(builder.numPieces)));
+			return;
+		}
+		if (file == null)
+		{
+			System.err.println("usage: java TilingDatabaseBuilder [-threads n] [-limit tilings] [-run records] [-tmp dir] <database>");
+			System.err.println("       java TilingDatabaseBuilder -estimate probes");
+			System.exit(2);
+		}
+		File tmpDir = Files.createTempDirectory(tmp == null ? new File(file).getAbsoluteFile().getParentFile().toPath()
+				: new File(tmp).toPath(), "tilings").toFile();
+		long start = System.nanoTime();
+		TilingDatabaseBuilder builder = new TilingDatabaseBuilder(PlacementTable.STANDARD, threads, runSize, tmpDir);
+		builder.setLimit(limit);
+		long patterns = builder.build(new File(file));
+		tmpDir.delete();
+		System.err.println(builder.numTilings.get() + " tilings, " + patterns + " patterns"
+				+ (builder.cutShort.get() ? " (stopped at the limit)" : " (complete)") + ", " + builder.numSteps.get() + " steps, "
+				+ builder.numRuns.get() + " runs, " + String.format("%.1f", (System.nanoTime() - start) / 1e9) + " s");
+	}
+	
+	// stop after this many tilings; the database won't be marked complete unless there were no more
+	public void setLimit(long tilings)
+	{
+		this.limit = tilings;
+	}
+	
+	// enumerates, sorts and writes the database; returns the number of patterns in it
+	public long build(File target) throws IOException, InterruptedException
+	{
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		final ThreadLocal<RunBuffer> local = new ThreadLocal<RunBuffer>()
+		{
+			protected RunBuffer initialValue()
+			{
+				RunBuffer b = new RunBuffer();
+				synchronized (buffers)
+				{
+					buffers.add(b);
+				}
+				return b;
+			}
+		};
+		for (int f = 0; f < byFirstCell[0].length; f++)		// one task per pair of opening placements
+		{
+			final Placement first = byFirstCell[0][f];
+			final short firstIndex = indexes[0][f];
+			long occupied = first.getCells();
+			int cell = Long.numberOfTrailingZeros(~occupied);
+			for (int k = 0; k < byFirstCell[cell].length; k++)
+			{
+				final Placement second = byFirstCell[cell][k];
+				final short secondIndex = indexes[cell][k];
+				if (second.getPiece() == first.getPiece() || (occupied & second.getCells()) != 0
+						|| !Solver.checkHeuristics(occupied | second.getCells()))
+					continue;
+				pool.execute(new Runnable()
+				{
+					public void run()
+					{
+						if (stopped.get())
+						{
+							cutShort.set(true);
+							return;
+						}
+						Enumeration e = new Enumeration(local.get());
+						e.place(first, firstIndex);
+						e.place(second, secondIndex);
+						e.fill(2);
+						numSteps.addAndGet(e.steps);
+					}
+				});
+			}
+		}
+		pool.shutdown();
+		pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		for (RunBuffer b : buffers)
+			b.flush();
+		if (failure != null)
+			throw failure;
+		
+		File partial = new File(target.getAbsoluteFile().getParentFile(), target.getName() + ".partial");
+		long patterns = merge(partial);
+		Files.move(partial.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return patterns;
+	}
+	
+	// Knuth's estimate of the full enumeration: each probe walks one random path down the search tree, picking one of a
+	// node's n children and counting everything below it n times over; the average over the probes is unbiased
+	// returns {tilings, standard error of tilings, steps}
+	public double[] estimate(long probes, long seed)
+	{
+		SplittableRandom random = new SplittableRandom(seed);
+		Placement[] children = new Placement[byFirstCell[0].length];
+		for (Placement[] pls : byFirstCell)
+			if (pls.length > children.length)
+				children = new Placement[pls.length];
+		double tilings = 0, squares = 0, steps = 0;
+		for (long n = 0; n < probes; n++)
+		{
+			long occupied = 0;
+			long usedPieces = 0;
+			double weight = 1;
+			for (int depth = 0; depth < numPieces && weight > 0; depth++)
+			{
+				int numChildren = 0;
+				for (Placement pl : byFirstCell[Long.numberOfTrailingZeros(~occupied)])
+				{
+					if ((usedPieces & (1L << pl.getPiece())) != 0 || (occupied & pl.getCells()) != 0)
+						continue;
+					steps += weight;
+					if (Solver.checkHeuristics(occupied | pl.getCells()))
+						children[numChildren++] = pl;
+				}
+				weight *= numChildren;
+				if (numChildren > 0)
+				{
+					Placement pl = children[random.nextInt(numChildren)];
+					occupied |= pl.getCells();
+					usedPieces |= 1L << pl.getPiece();
+				}
+			}
+			tilings += weight;
+			squares += weight * weight;
+		}
+		double mean = tilings / probes;
+		return new double[] {mean, Math.sqrt(Math.max(0, squares / probes - mean * mean) / probes), steps / probes};
+	}
+	
+	// one task's depth-first search; every tiling goes into the thread's buffer
+	private class Enumeration
+	{
+		private final RunBuffer buffer;
+		private final short[] codes = new short[numPieces];		// per piece, index of its placement
+		private long occupied;
+		private long usedPieces;
+		private long red;
+		private long steps;
+		
+		Enumeration(RunBuffer buffer)
+		{
+			this.buffer = buffer;
+		}
+		
+		void place(Placement pl, short index)
+		{
+			occupied |= pl.getCells();
+			usedPieces |= 1L << pl.getPiece();
+			red |= pl.getRedCells();
+			codes[pl.getPiece()] = index;
+		}
+		
+		void remove(Placement pl)
+		{
+			occupied &= ~pl.getCells();
+			usedPieces &= ~(1L << pl.getPiece());
+			red &= ~pl.getRedCells();
+		}
+		
+		void fill(int depth)
+		{
+			if (depth >= numPieces)
+			{
+				buffer.add(red, codes);
+				if (numTilings.incrementAndGet() >= limit)
+					stopped.set(true);
+				return;
+			}
+			int cell = Long.numberOfTrailingZeros(~occupied);
+			if (cell >= byFirstCell.length)
+				return;
+			Placement[] candidates = byFirstCell[cell];
+			for (int k = 0; k < candidates.length; k++)
+			{
+				Placement pl = candidates[k];
+				if ((usedPieces & (1L << pl.getPiece())) != 0 || (occupied & pl.getCells()) != 0)
+					continue;
+				steps++;
+				place(pl, indexes[cell][k]);
+				if (Solver.checkHeuristics(occupied))
+				{
+					if (stopped.get())					// a subtree that could hold tilings is left out
+					{
+						cutShort.set(true);
+						remove(pl);
+						return;
+					}
+					fill(depth + 1);
+				}
+				remove(pl);
+			}
+		}
+	}
+	
+	// one thread's records waiting to be sorted and written as a run
+	private class RunBuffer
+	{
+		private final long[] patterns = new long[runSize];
+		private final short[] codes = new short[runSize * numPieces];
+		private int size;
+		
+		void add(long pattern, short[] pieceCodes)
+		{
+			patterns[size] = pattern;
+			System.arraycopy(pieceCodes, 0, codes, size * numPieces, numPieces);
+			if (++size == runSize)
+				flush();
+		}
+		
+		// sorts the records and writes them as a new run, once per pattern
+		void flush()
+		{
+			if (size == 0)
+				return;
+			sort(0, size - 1);
+			File run = new File(tmpDir, "run-" + numRuns.incrementAndGet());
+			try
+			{
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), 1 << 16));
+				try
+				{
+					for (int n = 0; n < size; n++)
+					{
+						if (n > 0 && patterns[n] == patterns[n - 1])
+							continue;
+						out.writeLong(patterns[n]);
+						for (int p = 0; p < numPieces; p++)
+							out.writeShort(codes[n * numPieces + p]);
+					}
+				}
+				finally
+				{
+					out.close();
+				}
+			}
+			catch (IOException e)
+			{
+				synchronized (runs)
+				{
+					if (failure == null)
+						failure = e;
+				}
+				stopped.set(true);
+			}
+			synchronized (runs)
+			{
+				runs.add(run);
+			}
+			size = 0;
+		}
+		
+		// quicksort by pattern, moving each record's codes along with it
+		private void sort(int lo, int hi)
+		{
+			while (lo < hi)
+			{
+				long pivot = patterns[(lo + hi) >>> 1];
+				int i = lo, j = hi;
+				while (i <= j)
+				{
+					while (patterns[i] < pivot)
+						i++;
+					while (patterns[j] > pivot)
+						j--;
+					if (i <= j)
+						swap(i++, j--);
+				}
+				if (j - lo < hi - i)		// recurse into the smaller half, so the stack stays shallow
+				{
+					sort(lo, j);
+					lo = i;
+				}
+				else
+				{
+					sort(i, hi);
+					hi = j;
+				}
+			}
+		}
+		
+		private void swap(int a, int b)
+		{
+			long t = patterns[a];
+			patterns[a] = patterns[b];
+			patterns[b] = t;
+			for (int p = 0; p < numPieces; p++)
+			{
+				short c = codes[a * numPieces + p];
+				codes[a * numPieces + p] = codes[b * numPieces + p];
+				codes[b * numPieces + p] = c;
+			}
+		}
+	}
+	
+	// a sorted run being read back for the merge
+	private class RunReader
+	{
+		private final DataInputStream in;
+		private long pattern;
+		private final short[] codes = new short[numPieces];
+		
+		RunReader(File run) throws IOException
+		{
+			this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), 1 << 16));
+		}
+		
+		// reads the next record; false (and closed) at the end of the run
+		boolean next() throws IOException
+		{
+			try
+			{
+				pattern = in.readLong();
+			}
+			catch (EOFException e)
+			{
+				in.close();
+				return false;
+			}
+			for (int p = 0; p < numPieces; p++)
+				codes[p] = in.readShort();
+			return true;
+		}
+	}
+	
+	// merges the runs into a database file, deleting them; returns the number of records
+	// while there are more than MERGE_WAYS, each pass merges them in groups into longer runs, so a full build's thousands
+	// of runs never need more than MERGE_WAYS open files and buffers
+	private long merge(File file) throws IOException
+	{
+		List<File> level = runs;
+		for (int pass = 1; level.size() > MERGE_WAYS; pass++)
+		{
+			ArrayList<File> next = new ArrayList<File>();
+			for (int from = 0; from < level.size(); from += MERGE_WAYS)
+			{
+				List<File> group = level.subList(from, Math.min(from + MERGE_WAYS, level.size()));
+				if (group.size() == 1)
+				{
+					next.add(group.get(0));
+					continue;
+				}
+				File merged = new File(tmpDir, "merge-" + pass + "-" + next.size());
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(merged), 1 << 16));
+				try
+				{
+					mergeRuns(group, out);
+				}
+				finally
+				{
+					out.close();
+				}
+				for (File run : group)
+					run.delete();
+				next.add(merged);
+			}
+			level = next;
+		}
+		
+		long count;
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try
+		{
+			out.writeInt(TilingDatabase.MAGIC);
+			out.writeInt(TilingDatabase.VERSION);
+			out.writeInt(numPieces);
+			out.writeInt(cutShort.get() ? 0 : TilingDatabase.FLAG_COMPLETE);
+			out.writeLong(0);						// number of records, filled in below
+			count = mergeRuns(level, out);
+		}
+		finally
+		{
+			out.close();
+		}
+		for (File run : level)
+			run.delete();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try
+		{
+			raf.seek(TilingDatabase.HEADER_SIZE - 8);
+			raf.writeLong(count);
+		}
+		finally
+		{
+			raf.close();
+		}
+		return count;
+	}
+	
+	// writes the records of the sorted runs to out in pattern order, once per pattern; returns how many it wrote
+	private long mergeRuns(List<File> group, DataOutputStream out) throws IOException
+	{
+		PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(Math.max(1, group.size()), new Comparator<RunReader>()
+		{
+			public int compare(RunReader a, RunReader b)
+			{
+				return Long.compare(a.pattern, b.pattern);
+			}
+		});
+		for (File run : group)
+		{
+			RunReader r = new RunReader(run);
+			if (r.next())
+				queue.add(r);
+		}
+		long count = 0;
+		long last = 0;
+		while (!queue.isEmpty())
+		{
+			RunReader r = queue.poll();
+			if (count == 0 || r.pattern != last)	// the same pattern can be in several runs; keep the first
+			{
+				out.writeLong(r.pattern);
+				for (int p = 0; p < numPieces; p++)
+					out.writeShort(r.codes[p]);
+				last = r.pattern;
+				count++;
+			}
+			if (r.next())
+				queue.add(r);
+		}
+		return count;
+	}
+}
@@ -0,0 +1,114 @@
+// one in-bounds position of one piece on a board of any size (see WideSolver); the multi-word version of Placement
+// cells are numbered row*cols + col, and the board is a long[] with cell n at bit n%64 of word n/64
+// only the words the piece touches are stored, so testing for overlap is a few ANDs whatever the board size
+public final class WidePlacement
+{
+	private final int piece;			// index in the PieceSet
+	private final int orientation;		// index in PieceSet.getOrientations(piece)
+	private final int row, col;			// top left of the piece's bounding box
+	private final int[] cells;			// covered cells, lowest first
+	private final int[] words;			// indexes of the words the piece touches
+	private final long[] masks;			// covered cells in each of those words
+	private final long[] redMasks;		// covered red cells in each of those words
+	
+	public WidePlacement(int piece, int orientation, int row, int col, int[] cells, boolean[] red)
+	{
+		this.piece = piece;
+		this.orientation = orientation;
+		this.row = row;
+		this.col = col;
+		this.cells = cells.clone();
+		int first = cells[0] >>> 6;
+		int last = first;
+		for (int c : cells)
+		{
+			first = Math.min(first, c >>> 6);
+			last = Math.max(last, c >>> 6);
+		}
+		int n = 0;
+		long[] m = new long[last - first + 1];
+		long[] r = new long[m.length];
+		for (int k = 0; k < cells.length; k++)
+		{
+			m[(cells[k] >>> 6) - first] |= 1L << cells[k];
+			if (red[k])
+				r[(cells[k] >>> 6) - first] |= 1L << cells[k];
+		}
+		for (long w : m)
+			if (w != 0)
+				n++;
+		this.words = new int[n];
+		this.masks = new long[n];
+		this.redMasks = new long[n];
+		n = 0;
+		for (int w = 0; w < m.length; w++)
+		{
+			if (m[w] == 0)
+				continue;
+			words[n] = first + w;
+			masks[n] = m[w];
+			redMasks[n] = r[w];
+			n++;
+		}
+	}
+	
+	public int getPiece()
+	{
+		return piece;
+	}
+	
+	public int getOrientation()
+	{
+		return orientation;
+	}
+	
+	public int getRow()
+	{
+		return row;
+	}
+	
+	public int getCol()
+	{
+		return col;
+	}
+	
+	public int getSize()
+	{
+		return cells.length;
+	}
+	
+	public int getCell(int k)
+	{
+		return cells[k];
+	}
+	
+	// true if any of the cells is set in board
+	public boolean overlaps(long[] board)
+	{
+		for (int k = 0; k < words.length; k++)
+			if ((board[words[k]] & masks[k]) != 0)
+				return true;
+		return false;
+	}
+	
+	// true if the piece's colors are the colors of refRed (bit set = red) under it
+	public boolean matches(long[] refRed)
+	{
+		for (int k = 0; k < words.length; k++)
+			if ((refRed[words[k]] & masks[k]) != redMasks[k])
+				return false;
+		return true;
+	}
+	
+	// toggles the cells in board: once to place the piece, again to take it off
+	public void toggle(long[] board)
+	{
+		for (int k = 0; k < words.length; k++)
+			board[words[k]] ^= masks[k];
+	}
+	
+	public String toString()
+	{
+		return piece + "@" + row + "," + col + "/" + orientation;
+	}
+}
@@ -0,0 +1,749 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// cell-first search for boards of any size and any PieceSet, with several copies of a piece allowed
+// the board is a long[] (see WidePlacement) instead of Solver's single long, so the 8x8 engines keep their one-word
+// fast path and this one is only used when the board or the pieces don't fit them
+// copies of a piece are interchangeable, so the search only counts how many are left and never tries them in a different order
+// a solve stopped by a limit or cancel can be saved with checkpoint() and carried on later, even in another process, with resume()
+//
+// usage: java WideSolver [-pieces file] [-size <rows>x<cols>] [-checkpoint file] [-every seconds] [file]
+// reads patterns like BatchSolver (rows*cols 'r'/'b' characters per record) from the file or stdin
+// the default piece set is the standard one; the default size is the square the piece set covers
+// with -checkpoint, the position is saved to the file every so often and on shutdown, and a run with the same file and input
+// carries on from the record it was in; records finished after the last save are solved (and printed) again
+public class WideSolver
+{
+	private final PieceSet set;
+	private final int rows, cols;
+	private final int numCells;
+	private final int numWords;
+	private final int numCopies;			// pieces to place, counting copies
+	private final ArrayList<WidePlacement> all;	// every in-bounds placement, biggest pieces first
+	private final int numOutOfBounds;		// (piece, orientation, origin) combinations that don't fit on the board
+	private final int[][] neighbours;		// per cell, the cells sharing an edge with it
+	private final AtomicBoolean cancelled = new AtomicBoolean();
+	private SearchLimits limits = SearchLimits.NONE;
+	
+	// per-solve state
+	private WidePlacement[][] byFirstCell;	// per cell, the placements matching the reference whose lowest cell it is
+	private long[] occupied;
+	private long[] refRed;
+	private int[] copiesLeft;				// per piece
+	private int[] singlesLeft;				// 1-cell pieces left: [0] black, [1] red
+	private WidePlacement[] path;			// placement at each depth
+	private int[] choice;					// index of each depth's placement in byFirstCell[its cell]
+	private int stopDepth;					// depth the search was at when a limit or cancel stopped it
+	private int[] resumeAt;					// choice of each depth a resumed search puts back before carrying on
+	private int resumeDepth;				// depths still to put back; 0 once the resumed search has reached where it stopped
+	private SearchStats stats;
+	private long steps;
+	private long nextCheck;					// see Solver.checkLimits
+	private long charged;
+	private SolveResult.Status stopped;
+	private boolean solved;
+	
+	public WideSolver(PieceSet set, int rows, int cols)
+	{
+		if (set.getArea() != rows * cols)
+			throw new IllegalArgumentException("the pieces cover " + set.getArea() + " cells, the board has " + rows * cols);
+		this.set = set;
+		this.rows = rows;
+		this.cols = cols;
+		this.numCells = rows * cols;
+		this.numWords = (numCells + 63) >>> 6;
+		int copies = 0;
+		for (int p = 0; p < set.getNumPieces(); p++)
+			copies += set.getCopies(p);
+		this.numCopies = copies;
+		
+		this.neighbours = new int[numCells][];
+		for (int i = 0; i < rows; i++)
+		{
+			for (int j = 0; j < cols; j++)
+			{
+				ArrayList<Integer> list = new ArrayList<Integer>();
+				if (i > 0)
+					list.add(cell(i - 1, j));
+				if (j > 0)
+					list.add(cell(i, j - 1));
+				if (j + 1 < cols)
+					list.add(cell(i, j + 1));
+				if (i + 1 < rows)
+					list.add(cell(i + 1, j));
+				neighbours[cell(i, j)] = new int[list.size()];
+				for (int k = 0; k < list.size(); k++)
+					neighbours[cell(i, j)][k] = list.get(k);
+			}
+		}
+		
+		this.all = new ArrayList<WidePlacement>();
+		int outOfBounds = 0;
+		for (int p = 0; p < set.getNumPieces(); p++)
+		{
+			ArrayList<PieceSet.Shape> orientations = set.getOrientations(p);
+			for (int i = 0; i < rows; i++)
+			{
+				for (int j = 0; j < cols; j++)
+				{
+					for (int o = 0; o < orientations.size(); o++)
+					{
+						PieceSet.Shape s = orientations.get(o);
+						if (i + s.getHeight() > rows || j + s.getWidth() > cols)
+						{
+							outOfBounds++;
+							continue;
+						}
+						int[] cells = new int[s.getSize()];
+						boolean[] red = new boolean[s.getSize()];
+						for (int k = 0; k < cells.length; k++)
+						{
+							cells[k] = cell(i + s.getRow(k), j + s.getCol(k));
+							red[k] = s.isRed(k);
+						}
+						sortCells(cells, red);
+						all.add(new WidePlacement(p, o, i, j, cells, red));
+					}
+				}
+			}
+		}
+		this.numOutOfBounds = outOfBounds;
+		Collections.sort(all, new Comparator<WidePlacement>()	// biggest pieces first, they're the hardest to fit later
+		{
+			public int compare(WidePlacement a, WidePlacement b)
+			{
+				if (a.getSize() != b.getSize())
+					return b.getSize() - a.getSize();
+				return a.getPiece() - b.getPiece();
+			}
+		});
+	}
+	
+	public int getRows()
+	{
+		return rows;
+	}
+	
+	public int getCols()
+	{
+		return cols;
+	}
+	
+	public PieceSet getPieceSet()
+	{
+		return set;
+	}
+	
+	private int cell(int i, int j)
+	{
+		return i * cols + j;
+	}
+	
+	// sorts cells lowest first, keeping red in step
+	private static void sortCells(int[] cells, boolean[] red)
+	{
+		for (int a = 1; a < cells.length; a++)
+		{
+			for (int b = a; b > 0 && cells[b - 1] > cells[b]; b--)
+			{
+				int c = cells[b];
+				cells[b] = cells[b - 1];
+				cells[b - 1] = c;
+				boolean r = red[b];
+				red[b] = red[b - 1];
+				red[b - 1] = r;
+			}
+		}
+	}
+	
+	// stops a running solve; like Solver, a cancelled solver stays cancelled
+	public void cancel()
+	{
+		cancelled.set(true);
+	}
+	
+	// deadline and/or step budget, as for Solver
+	public void setLimits(SearchLimits limits)
+	{
+		this.limits = limits;
+	}
+	
+	// rows*cols 'r'/'b' characters, row by row; whitespace is ignored
+	public long[] parsePattern(CharSequence text)
+	{
+		long[] red = new long[numWords];
+		int n = 0;
+		for (int k = 0; k < text.length(); k++)
+		{
+			char c = text.charAt(k);
+			if (Character.isWhitespace(c))
+				continue;
+			if (n >= numCells || (c != 'r' && c != 'b'))
+				throw new IllegalArgumentException("expected " + numCells + " 'r'/'b' characters");
+			if (c == 'r')
+				red[n >>> 6] |= 1L << n;
+			n++;
+		}
+		if (n != numCells)
+			throw new IllegalArgumentException("expected " + numCells + " 'r'/'b' characters, got " + n);
+		return red;
+	}
+	
+	// the reference with the top left cell black and alternating from there, like the standard puzzle's
+	public long[] checkerboard()
+	{
+		long[] red = new long[numWords];
+		for (int i = 0; i < rows; i++)
+			for (int j = 0; j < cols; j++)
+				if (i % 2 != j % 2)
+					red[cell(i, j) >>> 6] |= 1L << cell(i, j);
+		return red;
+	}
+	
+	// refRed = bit per cell, set = red (see parsePattern)
+	// the solution, if any, is left in getSolution(); SolveResult's own Solution is for 8x8 boards, so it is always null here
+	public SolveResult solve(long[] refRed)
+	{
+		long start = System.nanoTime();
+		this.resumeDepth = 0;
+		if (!setUp(refRed))
+			return new SolveResult(SolveResult.Status.UNEVEN_COLORS, null, 0, System.nanoTime() - start, stats);
+		return search(start, 0);
+	}
+	
+	// carries on the solve saved in checkpoint from where it stopped; the result's steps include the ones before it was saved
+	// throws IllegalArgumentException if checkpoint was saved for another board or piece set, or doesn't fit this one
+	public SolveResult resume(Checkpoint checkpoint)
+	{
+		long start = System.nanoTime();
+		if (checkpoint.rows != rows || checkpoint.cols != cols || checkpoint.numCopies != numCopies
+				|| checkpoint.numPlacements != all.size())
+			throw new IllegalArgumentException("the checkpoint is for a different board or piece set");
+		if (!setUp(checkpoint.refRed))
+			throw new IllegalArgumentException("the checkpoint's reference doesn't fit the piece set");
+		int cell = 0;
+		for (int d = 0; d < checkpoint.choice.length; d++)	// check the path can be put back, then take it off again
+		{
+			cell = nextEmpty(cell);
+			int c = checkpoint.choice[d];
+			if (cell >= numCells || c < 0 || c >= byFirstCell[cell].length || copiesLeft[byFirstCell[cell][c].getPiece()] == 0
+					|| byFirstCell[cell][c].overlaps(occupied))
+			{
+				for (d--; d >= 0; d--)
+					remove(path[d], d);
+				throw new IllegalArgumentException("the checkpoint doesn't fit this board");
+			}
+			add(byFirstCell[cell][c], d);
+			cell++;
+		}
+		for (int d = checkpoint.choice.length - 1; d >= 0; d--)
+			remove(path[d], d);
+		this.resumeAt = checkpoint.choice;
+		this.resumeDepth = checkpoint.choice.length;
+		return search(start, checkpoint.steps);
+	}
+	
+	// where the last solve (or resume) stopped, for record, the caller's number for its pattern (e.g. its place in a batch)
+	// throws IllegalStateException unless a limit or cancel stopped it
+	public Checkpoint checkpoint(long record)
+	{
+		if (stopped == null || solved)
+			throw new IllegalStateException("only a solve stopped by a limit or cancel can be checkpointed");
+		return new Checkpoint(rows, cols, numCopies, all.size(), record, refRed.clone(),
+				Arrays.copyOf(choice, stopDepth), steps);
+	}
+	
+	// the per-solve state for a new search of refRed; false if its colors don't match the piece set's
+	private boolean setUp(long[] refRed)
+	{
+		this.path = new WidePlacement[numCopies];
+		this.choice = new int[numCopies];
+		this.solved = false;
+		this.steps = 0;
+		this.stopped = null;
+		this.stats = new SearchStats(numCopies);
+		int red = 0;
+		for (long w : refRed)
+			red += Long.bitCount(w);
+		if (refRed.length != numWords || red != set.getNumRed())
+			return false;
+		this.refRed = refRed;
+		
+		ArrayList<ArrayList<WidePlacement>> lists = new ArrayList<ArrayList<WidePlacement>>();
+		for (int c = 0; c < numCells; c++)
+			lists.add(new ArrayList<WidePlacement>());
+		for (WidePlacement pl : all)
+			if (pl.matches(refRed))
+				lists.get(pl.getCell(0)).add(pl);
+		this.byFirstCell = new WidePlacement[numCells][];
+		for (int c = 0; c < numCells; c++)
+			byFirstCell[c] = lists.get(c).toArray(new WidePlacement[lists.get(c).size()]);
+		
+		this.occupied = new long[numWords];
+		if ((numCells & 63) != 0)
+			occupied[numWords - 1] = -1L << numCells;		// the bits past the last cell are never empty
+		this.copiesLeft = new int[set.getNumPieces()];
+		this.singlesLeft = new int[2];
+		for (int p = 0; p < copiesLeft.length; p++)
+		{
+			copiesLeft[p] = set.getCopies(p);
+			PieceSet.Shape s = set.getShape(p);
+			if (s.getSize() == 1)
+				singlesLeft[s.isRed(0) ? 1 : 0] += copiesLeft[p];
+		}
+		return true;
+	}
+	
+	// runs the search set up by setUp, stepsBefore having been taken before this run
+	private SolveResult search(long start, long stepsBefore)
+	{
+		this.steps = stepsBefore;
+		this.charged = stepsBefore;
+		this.stopDepth = 0;
+		int kept = 0;
+		for (WidePlacement[] pls : byFirstCell)
+			kept += pls.length;
+		if (!checkLimits())
+			fillCell(0, 0);
+		limits.charge(steps - charged);
+		
+		long nanos = System.nanoTime() - start;
+		stats.finish(steps, nanos);
+		stats.filtered(numOutOfBounds, all.size() - kept);
+		SolveResult.Status status;
+		if (solved)
+			status = SolveResult.Status.SOLVED;
+		else if (stopped != null)
+			status = stopped;
+		else
+			status = SolveResult.Status.NO_SOLUTION;
+		return new SolveResult(status, null, steps, nanos, stats);
+	}
+	
+	// the placements of the last solution found, in the order they were placed, or null
+	public WidePlacement[] getSolution()
+	{
+		return solved ? path.clone() : null;
+	}
+	
+	// cell = every cell before it is covered
+	private void fillCell(int cell, int depth)
+	{
+		cell = nextEmpty(cell);
+		if (cell >= numCells)							// board full, and the areas match, so every piece is placed
+		{
+			solved = true;
+			return;
+		}
+		boolean replay = depth < resumeDepth;			// a resumed search putting back the placement it stopped under
+		if (depth == resumeDepth)
+			resumeDepth = 0;
+		if (!replay && steps >= nextCheck && checkLimits())
+		{
+			stopDepth = depth;
+			return;
+		}
+		WidePlacement[] candidates = byFirstCell[cell];
+		for (int i = replay ? resumeAt[depth] : 0; i < candidates.length; i++)
+		{
+			WidePlacement pl = candidates[i];
+			if (replay)									// counted and checked before the checkpoint was saved
+				replay = false;
+			else
+			{
+				steps++;
+				if (copiesLeft[pl.getPiece()] == 0 || pl.overlaps(occupied))
+					continue;
+				stats.fit(depth);
+			}
+			add(pl, depth);
+			choice[depth] = i;
+			if (checkHoles(pl))
+			{
+				fillCell(cell + 1, depth + 1);
+				if (solved)
+					return;
+				stats.backtrack();
+			}
+			else
+				stats.hole();
+			remove(pl, depth);
+			if (stopped != null)
+				return;
+		}
+	}
+	
+	private void add(WidePlacement pl, int depth)
+	{
+		pl.toggle(occupied);
+		copiesLeft[pl.getPiece()]--;
+		if (pl.getSize() == 1)
+			singlesLeft[color(pl.getCell(0))]--;
+		path[depth] = pl;
+	}
+	
+	private void remove(WidePlacement pl, int depth)
+	{
+		pl.toggle(occupied);
+		copiesLeft[pl.getPiece()]++;
+		if (pl.getSize() == 1)
+			singlesLeft[color(pl.getCell(0))]++;
+		path[depth] = null;
+	}
+	
+	// true if the search has to stop, looking at cancel and the limits only every so many steps (see Solver.checkLimits)
+	private boolean checkLimits()
+	{
+		if (stopped == null)
+		{
+			if (cancelled.get())
+				stopped = SolveResult.Status.CANCELLED;
+			else
+				stopped = limits.charge(steps - charged);
+			charged = steps;
+			nextCheck = steps + limits.nextCheck();
+		}
+		return stopped != null;
+	}
+	
+	// the first empty cell at or after cell, a word at a time; numCells or more if there isn't one
+	private int nextEmpty(int cell)
+	{
+		int w = cell >>> 6;
+		if (w >= numWords)
+			return numCells;
+		long free = ~occupied[w] & (-1L << cell);
+		while (free == 0)
+		{
+			if (++w == numWords)
+				return numCells;
+			free = ~occupied[w];
+		}
+		return (w << 6) + Long.numberOfTrailingZeros(free);
+	}
+	
+	private int color(int cell)
+	{
+		return (int)(refRed[cell >>> 6] >>> cell) & 1;
+	}
+	
+	private boolean isEmpty(int cell)
+	{
+		return (occupied[cell >>> 6] & (1L << cell)) == 0;
+	}
+	
+	// like Solver's hole heuristic, generalized: every cell the new piece just walled in can only take a 1-cell piece
+	// of its color, so there have to be enough of those left
+	private boolean checkHoles(WidePlacement pl)
+	{
+		int black = 0;
+		int red = 0;
+		for (int k = 0; k < pl.getSize(); k++)
+		{
+			for (int n : neighbours[pl.getCell(k)])
+			{
+				if (!isEmpty(n))
+					continue;
+				boolean walledIn = true;
+				for (int m : neighbours[n])
+					walledIn &= !isEmpty(m);
+				if (!walledIn || touchesEarlier(pl, k, n))	// count each cell once, from the first piece cell next to it
+					continue;
+				if (color(n) == 1)
+					red++;
+				else
+					black++;
+			}
+		}
+		return black <= singlesLeft[0] && red <= singlesLeft[1];
+	}
+	
+	// whether any of the first k cells of pl shares an edge with cell
+	private boolean touchesEarlier(WidePlacement pl, int k, int cell)
+	{
+		for (int e = 0; e < k; e++)
+			for (int n : neighbours[pl.getCell(e)])
+				if (n == cell)
+					return true;
+		return false;
+	}
+	
+	public static void main(String[] args) throws IOException
+	{
+		PieceSet set = PieceSet.standard();
+		int rows = -1;
+		int cols = -1;
+		File checkpoint = null;
+		long every = 60;
+		String file = null;
+		for (int i = 0; i < args.length; i++)
+		{
+			if (args[i].equals("-pieces"))
+				set = PieceSet.load(args[++i]);
+			else if (args[i].equals("-size"))
+			{
+				String[] dims = args[++i].split("x");
+				rows = Integer.parseInt(dims[0]);
+				cols = Integer.parseInt(dims[1]);
+			}
+			else if (args[i].equals("-checkpoint"))
+				checkpoint = new File(args[++i]);
+			else if (args[i].equals("-every"))
+				every = Long.parseLong(args[++i]);
+			else
+				file = args[i];
+		}
+		if (rows < 0)
+		{
+			rows = (int)Math.round(Math.sqrt(set.getArea()));
+			cols = rows;
+		}
+		final WideSolver solver = new WideSolver(set, rows, cols);
+		
+		Checkpoint resumed = null;
+		final AtomicBoolean stopping = new AtomicBoolean();
+		final CountDownLatch saved = new CountDownLatch(1);
+		if (checkpoint != null)
+		{
+			if (checkpoint.exists())
+			{
+				resumed = Checkpoint.read(checkpoint);
+				System.err.println("resuming record " + resumed.getRecord() + " after " + resumed.getSteps() + " steps");
+			}
+			// the searches stop when the slice's deadline passes, to be saved; a deadline-only SearchLimits charges no
+			// steps, so the solves in a slice can share one
+			solver.setLimits(SearchLimits.of(every * 1000, 0));
+			Runtime.getRuntime().addShutdownHook(new Thread()		// e.g. the node is being taken away: save before exiting
+			{
+				public void run()
+				{
+					stopping.set(true);
+					solver.cancel();
+					try
+					{
+						saved.await(10, TimeUnit.SECONDS);
+					}
+					catch (InterruptedException ex)
+					{
+					}
+				}
+			});
+		}
+		
+		BufferedReader in;
+		if (file == null || file.equals("-"))
+			in = new BufferedReader(new InputStreamReader(System.in));
+		else
+			in = new BufferedReader(new FileReader(file));
+		PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+		StringBuilder record = new StringBuilder();
+		long recordNum = 0;
+		String line;
+		while ((line = in.readLine()) != null)
+		{
+			int comment = line.indexOf('#');
+			if (comment >= 0)
+				line = line.substring(0, comment);
+			for (int n = 0; n < line.length(); n++)
+				if (!Character.isWhitespace(line.charAt(n)))
+					record.append(line.charAt(n));
+			if (record.length() < rows * cols)
+				continue;
+			recordNum++;
+			if (resumed != null && recordNum < resumed.getRecord())	// answered by the run that saved the checkpoint
+			{
+				record.setLength(0);
+				continue;
+			}
+			long[] refRed;
+			try
+			{
+				refRed = solver.parsePattern(record);
+			}
+			catch (IllegalArgumentException e)
+			{
+				out.println(recordNum + " ERROR " + e.getMessage());
+				record.setLength(0);
+				continue;
+			}
+			record.setLength(0);
+			SolveResult r;
+			if (resumed != null && recordNum == resumed.getRecord())
+			{
+				if (!resumed.isFor(refRed))
+				{
+					System.err.println(checkpoint + " was saved for a different pattern at record " + recordNum);
+					System.exit(2);
+				}
+				r = solver.resume(resumed);
+			}
+			else
+				r = solver.solve(refRed);
+			while (checkpoint != null && !r.isComplete())	// the slice is over, or the run is being stopped
+			{
+				Checkpoint cp = solver.checkpoint(recordNum);
+				cp.write(checkpoint);
+				if (stopping.get())
+				{
+					out.flush();
+					saved.countDown();
+					return;
+				}
+				solver.setLimits(SearchLimits.of(every * 1000, 0));
+				r = solver.resume(cp);
+			}
+			StringBuilder sb = new StringBuilder();
+			sb.append(recordNum).append(' ').append(r);
+			if (r.isSolved())
+				for (WidePlacement pl : solver.getSolution())
+					sb.append(' ').append(set.getName(pl.getPiece())).append('@')
+						.append(pl.getRow()).append(',').append(pl.getCol()).append('/').append(pl.getOrientation());
+			out.println(sb);
+			out.flush();
+		}
+		if (record.length() > 0)
+			out.println(++recordNum + " ERROR incomplete pattern at end of input");
+		in.close();
+		out.flush();
+		if (checkpoint != null)
+			checkpoint.delete();								// the whole input is done, so there's nothing to carry on
+		saved.countDown();
+	}
+	
+	// where a stopped solve had got to (see WideSolver.checkpoint), kept as the index of each depth's placement among the
+	// candidates for its cell: the cells follow from the placements before it, so the board isn't stored
+	// saved as "KWSC", version, rows, cols, pieces to place, in-bounds placements (int x6); record, steps (long, long);
+	//		number of words, then the reference (int, long per word); depth, then the index at each depth (int, int per depth)
+	public static class Checkpoint
+	{
+		public static final int MAGIC = 0x4b575343;		// "KWSC"
+		public static final int VERSION = 1;
+		
+		private final int rows, cols;
+		private final int numCopies;
+		private final int numPlacements;
+		private final long record;
+		private final long[] refRed;
+		private final int[] choice;
+		private final long steps;
+		
+		private Checkpoint(int rows, int cols, int numCopies, int numPlacements, long record, long[] refRed, int[] choice, long steps)
+		{
+			this.rows = rows;
+			this.cols = cols;
+			this.numCopies = numCopies;
+			this.numPlacements = numPlacements;
+			this.record = record;
+			this.refRed = refRed;
+			this.choice = choice;
+			this.steps = steps;
+		}
+		
+		public long getRecord()
+		{
+			return record;
+		}
+		
+		public long getSteps()
+		{
+			return steps;
+		}
+		
+		public boolean isFor(long[] refRed)
+		{
+			return Arrays.equals(this.refRed, refRed);
+		}
+		
+		// number of pieces on the board when the solve stopped
+		public int getDepth()
+		{
+			return choice.length;
+		}
+		
+		// it is written to a temporary file first and renamed over file, so a crash leaves either the old or the new one
+		public void write(File file) throws IOException
+		{
+			File tmp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+			FileOutputStream fos = new FileOutputStream(tmp);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+			try
+			{
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(rows);
+				out.writeInt(cols);
+				out.writeInt(numCopies);
+				out.writeInt(numPlacements);
+				out.writeLong(record);
+				out.writeLong(steps);
+				out.writeInt(refRed.length);
+				for (long w : refRed)
+					out.writeLong(w);
+				out.writeInt(choice.length);
+				for (int c : choice)
+					out.writeInt(c);
+				out.flush();
+				fos.getFD().sync();				// on disk before it replaces the old checkpoint
+			}
+			finally
+			{
+				out.close();
+			}
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		
+		// throws IOException if the file is unreadable or isn't a checkpoint; WideSolver.resume checks it fits the solver
+		public static Checkpoint read(File file) throws IOException
+		{
+			DataInputStream in = new DataInputStream(new FileInputStream(file));
+			try
+			{
+				if (in.readInt() != MAGIC || in.readInt() != VERSION)
+					throw new IOException(file + " is not a checkpoint");
+				int rows = in.readInt();
+				int cols = in.readInt();
+				int numCopies = in.readInt();
+				int numPlacements = in.readInt();
+				long record = in.readLong();
+				long steps = in.readLong();
+				int words = in.readInt();
+				if (rows <= 0 || cols <= 0 || words != ((long)rows * cols + 63) >>> 6)
+					throw new IOException(file + " is corrupt");
+				long[] refRed = new long[words];
+				for (int w = 0; w < words; w++)
+					refRed[w] = in.readLong();
+				int depth = in.readInt();
+				if (depth < 0 || depth > numCopies)
+					throw new IOException(file + " is corrupt");
+				int[] choice = new int[depth];
+				for (int d = 0; d < depth; d++)
+					choice[d] = in.readInt();
+				return new Checkpoint(rows, cols, numCopies, numPlacements, record, refRed, choice, steps);
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+	}
+}